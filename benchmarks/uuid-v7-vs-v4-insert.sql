@@ -0,0 +1,86 @@
+-- Insert throughput and primary-key index size for random (v4) vs time-ordered (v7) UUID keys.
+--
+--   createdb uuid_bench
+--   psql -d uuid_bench -v rows=10000000 -v batch=1000 -f benchmarks/uuid-v7-vs-v4-insert.sql
+--
+-- Rows are inserted in committed batches of :batch, closer to the service's many small transactions than a
+-- single bulk load. Compare the "Time:" lines of the two CALLs and the final size/fragmentation report. Run on a database larger than shared_buffers
+-- to see the effect of v4 keys touching random leaf pages.
+
+\timing on
+\set ON_ERROR_STOP on
+
+CREATE EXTENSION IF NOT EXISTS pgstattuple;
+
+-- Same layout as UuidV7Generator: 48-bit unix millis, version 7, 12-bit sub-millisecond counter
+-- (here derived from the microsecond clock), RFC variant, random tail. PostgreSQL 18 ships uuidv7() instead.
+CREATE OR REPLACE FUNCTION bench_uuid_v7() RETURNS uuid
+    LANGUAGE plpgsql VOLATILE AS
+$$
+DECLARE
+    now_ts  timestamptz := clock_timestamp();
+    millis  bigint      := floor(extract(epoch FROM now_ts) * 1000);
+    counter int         := (extract(microseconds FROM now_ts)::int % 1000) * 4;
+    bytes   bytea       := uuid_send(gen_random_uuid());
+BEGIN
+    bytes := overlay(bytes PLACING substring(int8send(millis) FROM 3) FROM 1 FOR 6);
+    bytes := set_byte(bytes, 6, 112 + counter / 256);
+    bytes := set_byte(bytes, 7, counter % 256);
+    RETURN encode(bytes, 'hex')::uuid;
+END;
+$$;
+
+DROP TABLE IF EXISTS bench_uuid_v4;
+DROP TABLE IF EXISTS bench_uuid_v7;
+
+-- Mirrors payment_customers, the widest of the UUID-keyed tables.
+CREATE TABLE bench_uuid_v4
+(
+    id                          uuid         NOT NULL PRIMARY KEY,
+    user_id                     varchar(255) NOT NULL,
+    stripe_customer_id          varchar(255) NOT NULL,
+    stripe_connected_account_id varchar(255) NOT NULL
+);
+
+CREATE TABLE bench_uuid_v7 (LIKE bench_uuid_v4 INCLUDING ALL);
+
+CREATE OR REPLACE PROCEDURE bench_fill(target regclass, v7 boolean, total bigint, batch int)
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    done bigint := 0;
+BEGIN
+    WHILE done < total LOOP
+        EXECUTE format(
+                'INSERT INTO %s (id, user_id, stripe_customer_id, stripe_connected_account_id)
+                 SELECT %s, ''user-'' || g, ''cus_'' || md5(g::text), ''acct_'' || (g %% 500)
+                 FROM generate_series($1 + 1, $1 + $2) g',
+                target, CASE WHEN v7 THEN 'bench_uuid_v7()' ELSE 'gen_random_uuid()' END)
+            USING done, batch;
+        done := done + batch;
+        COMMIT;
+    END LOOP;
+END;
+$$;
+
+CHECKPOINT;
+CALL bench_fill('bench_uuid_v4', false, :rows, :batch);
+
+CHECKPOINT;
+CALL bench_fill('bench_uuid_v7', true, :rows, :batch);
+
+VACUUM ANALYZE bench_uuid_v4;
+VACUUM ANALYZE bench_uuid_v7;
+
+SELECT c.relname                                    AS relation,
+       pg_size_pretty(pg_relation_size(c.oid))      AS size,
+       s.avg_leaf_density                           AS avg_leaf_density_pct,
+       s.leaf_fragmentation                         AS leaf_fragmentation_pct
+FROM pg_class c
+         CROSS JOIN LATERAL pgstatindex(c.oid::regclass) s
+WHERE c.relname IN ('bench_uuid_v4_pkey', 'bench_uuid_v7_pkey')
+ORDER BY c.relname;
+
+SELECT 'bench_uuid_v4' AS relation, pg_size_pretty(pg_total_relation_size('bench_uuid_v4')) AS total_size
+UNION ALL
+SELECT 'bench_uuid_v7', pg_size_pretty(pg_total_relation_size('bench_uuid_v7'));
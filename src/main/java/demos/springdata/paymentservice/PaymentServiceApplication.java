@@ -1,15 +1,27 @@
 package demos.springdata.paymentservice;
 
+import demos.springdata.paymentservice.config.ConnectAccountCacheProperties;
+import demos.springdata.paymentservice.config.FeignTransportProperties;
+import demos.springdata.paymentservice.config.IdempotencyProperties;
+import demos.springdata.paymentservice.config.JwtCacheProperties;
+import demos.springdata.paymentservice.config.MonolithOutboxProperties;
 import demos.springdata.paymentservice.config.StripeProperties;
+import demos.springdata.paymentservice.config.StripeRateLimitProperties;
+import demos.springdata.paymentservice.config.TenantCacheProperties;
+import demos.springdata.paymentservice.config.WebhookInboxProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(exclude = {UserDetailsServiceAutoConfiguration.class})
 @EnableFeignClients
-@EnableConfigurationProperties(StripeProperties.class)
+@EnableConfigurationProperties({StripeProperties.class, JwtCacheProperties.class, WebhookInboxProperties.class,
+        MonolithOutboxProperties.class, ConnectAccountCacheProperties.class, IdempotencyProperties.class,
+        StripeRateLimitProperties.class, FeignTransportProperties.class, TenantCacheProperties.class})
+@EnableScheduling
 public class PaymentServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,113 @@
+package demos.springdata.paymentservice.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import demos.springdata.paymentservice.exception.MonolithCallException;
+import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Non-blocking counterpart of the single-activation calls of {@link MonolithFeignClient}, on the JDK
+ * {@link HttpClient}: requests go out with {@code sendAsync}, so no thread waits on the monolith while a call is
+ * in flight.
+ * <p>
+ * At most {@code monolith.async.max-connections} requests are in flight at once. Further calls fail right away
+ * with {@link RejectedExecutionException} instead of queueing behind a stalled monolith.
+ */
+@Component
+public class AsyncMonolithClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final Duration requestTimeout;
+    private final Semaphore connections;
+
+    @Autowired
+    public AsyncMonolithClient(ObjectMapper objectMapper,
+                               @Value("${monolith.url}") String baseUrl,
+                               @Value("${monolith.async.max-connections:50}") int maxConnections,
+                               @Value("${monolith.async.connect-timeout:2s}") Duration connectTimeout,
+                               @Value("${monolith.async.request-timeout:5s}") Duration requestTimeout) {
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.requestTimeout = requestTimeout;
+        this.connections = new Semaphore(maxConnections);
+        this.httpClient = HttpClient.newBuilder()
+                .version(baseUrl.startsWith("https") ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    public CompletableFuture<Void> activateTenantSubscription(String tenantId, String planName, String abonnementDuration) {
+        URI uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/internal/payments/tenants/{tenantId}/activate")
+                .queryParam("plan", planName)
+                .queryParam("duration", abonnementDuration)
+                .buildAndExpand(tenantId)
+                .encode()
+                .toUri();
+
+        return send(uri, HttpRequest.BodyPublishers.noBody()).thenApply(body -> null);
+    }
+
+    public CompletableFuture<Void> activateUserMembership(String userId, SubscriptionRequest request) {
+        URI uri = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/internal/payments/users/{userId}/memberships/activate")
+                .buildAndExpand(userId)
+                .encode()
+                .toUri();
+
+        return send(uri, json(request)).thenApply(body -> null);
+    }
+
+    private CompletableFuture<String> send(URI uri, HttpRequest.BodyPublisher body) {
+        if (!connections.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many concurrent monolith calls"));
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(body)
+                .build();
+
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            connections.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return response
+                .whenComplete((ignored, error) -> connections.release())
+                .thenApply(result -> {
+                    if (result.statusCode() >= 400) {
+                        throw new MonolithCallException(result.statusCode(), result.body());
+                    }
+                    return result.body();
+                });
+    }
+
+    private HttpRequest.BodyPublisher json(Object payload) {
+        try {
+            return HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize monolith request", e);
+        }
+    }
+}
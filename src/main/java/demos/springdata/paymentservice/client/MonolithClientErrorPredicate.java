@@ -0,0 +1,24 @@
+package demos.springdata.paymentservice.client;
+
+import demos.springdata.paymentservice.exception.MonolithCallException;
+import feign.FeignException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+/**
+ * Failures the monolith circuit breakers do not count ({@code ignore-exception-predicate}): 4xx answers, which say
+ * nothing about the monolith's health, and {@link AsyncMonolithClient}'s local connection limit.
+ */
+public class MonolithClientErrorPredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+
+        return cause instanceof FeignException.FeignClientException
+                || cause instanceof MonolithCallException callException && callException.isClientError()
+                || cause instanceof RejectedExecutionException;
+    }
+}
@@ -1,13 +1,19 @@
 package demos.springdata.paymentservice.client;
 
+import demos.springdata.paymentservice.config.FeignTransportConfiguration;
+import demos.springdata.paymentservice.web.dto.ActivationResult;
+import demos.springdata.paymentservice.web.dto.MembershipActivationItem;
 import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import demos.springdata.paymentservice.web.dto.TenantActivationItem;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "damilsoft-monolith", url = "${monolith.url}")
+import java.util.List;
+
+@FeignClient(name = "damilsoft-monolith", url = "${monolith.url}", configuration = FeignTransportConfiguration.class)
 public interface MonolithFeignClient {
 
     @PostMapping("/internal/payments/tenants/{tenantId}/activate")
@@ -18,4 +24,12 @@ public interface MonolithFeignClient {
 
     @PostMapping("/internal/payments/users/{userId}/memberships/activate")
     void activateUserMembership(@PathVariable("userId") String userId, @RequestBody SubscriptionRequest request);
-}
\ No newline at end of file
+
+
+    @PostMapping("/internal/payments/tenants/activate/bulk")
+    List<ActivationResult> activateTenantSubscriptions(@RequestBody List<TenantActivationItem> items);
+
+
+    @PostMapping("/internal/payments/users/memberships/activate/bulk")
+    List<ActivationResult> activateUserMemberships(@RequestBody List<MembershipActivationItem> items);
+}
@@ -0,0 +1,34 @@
+package demos.springdata.paymentservice.client;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import feign.hc5.ApacheHttp5Client;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Feign transport over a pooled Apache HttpClient 5. Closing it shuts the pool down together with the Feign context.
+ */
+public class PooledFeignClient implements Client, Closeable {
+
+    private final CloseableHttpClient httpClient;
+    private final Client delegate;
+
+    public PooledFeignClient(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+        this.delegate = new ApacheHttp5Client(httpClient);
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        return delegate.execute(request, options);
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,113 @@
+package demos.springdata.paymentservice.client;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.HttpClient;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+import com.stripe.net.StripeResponseStream;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stripe SDK transport over a pooled Apache HttpClient 5, in place of the SDK's default {@code HttpURLConnection}
+ * client. The read timeout is taken from each request's options, so per-client settings still apply; retries are
+ * left to the SDK. Requests carry the same {@code User-Agent} and {@code X-Stripe-Client-User-Agent} headers as the
+ * stock client.
+ */
+public class PooledStripeHttpClient extends HttpClient implements Closeable {
+
+    private final CloseableHttpClient httpClient;
+
+    public PooledStripeHttpClient(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public StripeResponse request(StripeRequest request) throws StripeException {
+        try {
+            return httpClient.execute(toHttpRequest(request), context(request), response -> new StripeResponse(response.getCode(),
+                    headers(response), response.getEntity() != null
+                            ? new String(EntityUtils.toByteArray(response.getEntity()), StandardCharsets.UTF_8)
+                            : ""));
+        } catch (IOException e) {
+            throw connectionFailed(request, e);
+        }
+    }
+
+    @Override
+    public StripeResponseStream requestStream(StripeRequest request) throws StripeException {
+        try {
+            ClassicHttpResponse response = httpClient.executeOpen(null, toHttpRequest(request), context(request));
+            if (response.getEntity() == null) {
+                response.close();
+                return new StripeResponseStream(response.getCode(), headers(response), InputStream.nullInputStream());
+            }
+            return new StripeResponseStream(response.getCode(), headers(response), response.getEntity().getContent());
+        } catch (IOException e) {
+            throw connectionFailed(request, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private static ClassicHttpRequest toHttpRequest(StripeRequest request) {
+        ClassicRequestBuilder builder = ClassicRequestBuilder.create(request.method().name())
+                .setUri(request.url().toString());
+
+        HttpHeaders headers = request.headers()
+                .withAdditionalHeader("User-Agent", buildUserAgentString(request))
+                .withAdditionalHeader("X-Stripe-Client-User-Agent", buildXStripeClientUserAgentString());
+        headers.map().forEach((name, values) -> values.forEach(value -> builder.addHeader(name, value)));
+
+        if (request.content() != null) {
+            builder.setEntity(new ByteArrayEntity(request.content().byteArrayContent(), ContentType.parse(request.content().contentType())));
+        }
+        return builder.build();
+    }
+
+    private static HttpClientContext context(StripeRequest request) {
+        HttpClientContext context = HttpClientContext.create();
+        Integer readTimeout = request.options() != null ? request.options().getReadTimeout() : null;
+        if (readTimeout != null) {
+            context.setRequestConfig(RequestConfig.custom()
+                    .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                    .build());
+        }
+        return context;
+    }
+
+    private static HttpHeaders headers(ClassicHttpResponse response) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Header header : response.getHeaders()) {
+            headers.computeIfAbsent(header.getName(), name -> new ArrayList<>()).add(header.getValue());
+        }
+        return HttpHeaders.of(headers);
+    }
+
+    private static ApiConnectionException connectionFailed(StripeRequest request, IOException e) {
+        return new ApiConnectionException("IOException during API request to Stripe (" + request.url() + "): " + e.getMessage(), e);
+    }
+}
@@ -0,0 +1,113 @@
+package demos.springdata.paymentservice.client;
+
+import demos.springdata.paymentservice.web.dto.ActivationResult;
+import demos.springdata.paymentservice.web.dto.MembershipActivationItem;
+import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import demos.springdata.paymentservice.web.dto.TenantActivationItem;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Monolith calls behind a circuit breaker and a concurrency bulkhead per activation endpoint
+ * ({@code resilience4j.circuitbreaker/bulkhead.instances.monolith-*}). Single activations go through
+ * {@link AsyncMonolithClient} and return futures; bulk activations use {@link MonolithFeignClient}.
+ * <p>
+ * An open circuit or a full bulkhead fails fast with {@code CallNotPermittedException} or
+ * {@code BulkheadFullException}; callers are expected to defer the activation rather than retry inline.
+ * The breakers ignore what {@link MonolithClientErrorPredicate} matches.
+ */
+@Component
+public class ResilientMonolithClient {
+
+    public static final String TENANT_ACTIVATION = "monolith-tenant-activation";
+    public static final String MEMBERSHIP_ACTIVATION = "monolith-membership-activation";
+
+    private final MonolithFeignClient monolithClient;
+    private final AsyncMonolithClient asyncMonolithClient;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker tenantBreaker;
+    private final CircuitBreaker membershipBreaker;
+    private final Bulkhead tenantBulkhead;
+    private final Bulkhead membershipBulkhead;
+
+    @Autowired
+    public ResilientMonolithClient(MonolithFeignClient monolithClient, AsyncMonolithClient asyncMonolithClient,
+                                   CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry) {
+        this.monolithClient = monolithClient;
+        this.asyncMonolithClient = asyncMonolithClient;
+        this.meterRegistry = meterRegistry;
+        this.tenantBreaker = circuitBreakerRegistry.circuitBreaker(TENANT_ACTIVATION);
+        this.membershipBreaker = circuitBreakerRegistry.circuitBreaker(MEMBERSHIP_ACTIVATION);
+        this.tenantBulkhead = bulkheadRegistry.bulkhead(TENANT_ACTIVATION);
+        this.membershipBulkhead = bulkheadRegistry.bulkhead(MEMBERSHIP_ACTIVATION);
+    }
+
+    public CompletableFuture<Void> activateTenantSubscription(String tenantId, String planName, String abonnementDuration) {
+        return callAsync(tenantBulkhead, tenantBreaker, "activate-tenant",
+                () -> asyncMonolithClient.activateTenantSubscription(tenantId, planName, abonnementDuration));
+    }
+
+    public CompletableFuture<Void> activateUserMembership(String userId, SubscriptionRequest request) {
+        return callAsync(membershipBulkhead, membershipBreaker, "activate-membership",
+                () -> asyncMonolithClient.activateUserMembership(userId, request));
+    }
+
+    /**
+     * How many single activations may be in flight before the tighter of the two bulkheads starts rejecting.
+     */
+    public int getMaxConcurrentCalls() {
+        return Math.min(tenantBulkhead.getBulkheadConfig().getMaxConcurrentCalls(),
+                membershipBulkhead.getBulkheadConfig().getMaxConcurrentCalls());
+    }
+
+    public List<ActivationResult> activateTenantSubscriptions(List<TenantActivationItem> items) {
+        return call(tenantBulkhead, tenantBreaker, "activate-tenants-bulk", () -> monolithClient.activateTenantSubscriptions(items));
+    }
+
+    public List<ActivationResult> activateUserMemberships(List<MembershipActivationItem> items) {
+        return call(membershipBulkhead, membershipBreaker, "activate-memberships-bulk", () -> monolithClient.activateUserMemberships(items));
+    }
+
+    private <T> T call(Bulkhead bulkhead, CircuitBreaker breaker, String endpoint, Supplier<T> request) {
+        return bulkhead.executeSupplier(() -> breaker.executeSupplier(() -> timed(endpoint, request)));
+    }
+
+    private <T> CompletableFuture<T> callAsync(Bulkhead bulkhead, CircuitBreaker breaker, String endpoint, Supplier<CompletableFuture<T>> request) {
+        return bulkhead.executeCompletionStage(() -> breaker.executeCompletionStage(() -> timedAsync(endpoint, request)))
+                .toCompletableFuture();
+    }
+
+    private <T> CompletableFuture<T> timedAsync(String endpoint, Supplier<CompletableFuture<T>> request) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return request.get().whenComplete((result, error) -> sample.stop(timer(endpoint, error == null ? "success" : "error")));
+    }
+
+    private <T> T timed(String endpoint, Supplier<T> request) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = request.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer(endpoint, outcome));
+        }
+    }
+
+    private Timer timer(String endpoint, String outcome) {
+        return Timer.builder("monolith.client.requests")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,17 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "stripe.connect.account-cache")
+@Data
+public class ConnectAccountCacheProperties {
+    private boolean enabled;
+    private long maxEntries = 10_000;
+    private Duration ttl = Duration.ofMinutes(30);
+    private boolean warmUp = true;
+    private long unknownMaxEntries = 100_000;
+    private Duration unknownTtl = Duration.ofSeconds(30);
+}
@@ -0,0 +1,84 @@
+package demos.springdata.paymentservice.config;
+
+import demos.springdata.paymentservice.client.PooledFeignClient;
+import feign.Client;
+import feign.http2client.Http2Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+
+/**
+ * Feign client configuration that picks the transport from {@code feign-transport.clients.<name>}. It is referenced
+ * from {@code @FeignClient(configuration = ...)} and deliberately not a {@code @Configuration}, so it only applies
+ * inside each client's own context instead of becoming the global default. A pooled transport is shut down with
+ * that context.
+ */
+public class FeignTransportConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeignTransportConfiguration.class);
+
+    private String name;
+    private PooledFeignClient pooledClient;
+
+    @Bean(destroyMethod = "")
+    public Client feignClient(Environment environment, FeignTransportProperties properties, MeterRegistry meterRegistry) {
+        name = environment.getRequiredProperty("spring.cloud.openfeign.client.name");
+        FeignTransportProperties.Transport transport = properties.forClient(name);
+
+        LOGGER.info("Feign client {} uses the {} transport", name, transport.getType());
+
+        return switch (transport.getType()) {
+            case DEFAULT -> new Client.Default(null, null);
+            case HTTP2 -> new Http2Client(HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .build());
+            case POOLED -> {
+                pooledClient = pooled(name, transport, meterRegistry);
+                yield pooledClient;
+            }
+        };
+    }
+
+    @PreDestroy
+    public void close() {
+        if (pooledClient == null) {
+            return;
+        }
+        try {
+            pooledClient.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close the {} Feign connection pool", name, e);
+        }
+    }
+
+    private static PooledFeignClient pooled(String name, FeignTransportProperties.Transport transport, MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(transport.getMaxConnections())
+                .setMaxConnPerRoute(transport.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setTimeToLive(TimeValue.ofMilliseconds(transport.getTimeToLive().toMillis()))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(transport.getValidateAfterInactivity().toMillis()))
+                        .build())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+
+        return new PooledFeignClient(HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(transport.getIdleTimeout().toMillis()))
+                .build());
+    }
+}
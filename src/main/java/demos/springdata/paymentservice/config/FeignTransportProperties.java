@@ -0,0 +1,40 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HTTP transport per Feign client, keyed by the client's {@code name}. Clients without an entry get the pooled defaults.
+ */
+@ConfigurationProperties(prefix = "feign-transport")
+@Data
+public class FeignTransportProperties {
+    private Map<String, Transport> clients = new HashMap<>();
+
+    public Transport forClient(String name) {
+        return clients.getOrDefault(name, new Transport());
+    }
+
+    public enum Type {
+        /** JDK {@code HttpURLConnection}, one socket per request unless the JVM keep-alive cache reuses it. */
+        DEFAULT,
+        /** Apache HttpClient 5 with a bounded, metered connection pool. */
+        POOLED,
+        /** JDK {@code HttpClient}, negotiating HTTP/2 and multiplexing requests over one connection per host. */
+        HTTP2
+    }
+
+    @Data
+    public static class Transport {
+        private Type type = Type.POOLED;
+        private int maxConnections = 100;
+        private int maxConnectionsPerRoute = 20;
+        private Duration timeToLive = Duration.ofMinutes(5);
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+    }
+}
@@ -0,0 +1,15 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "payments.idempotency")
+@Data
+public class IdempotencyProperties {
+    private long memoryEntries = 10_000;
+    private Duration ttl = Duration.ofHours(24);
+    private Duration inFlightWait = Duration.ofSeconds(30);
+    private Duration inProgressLease = Duration.ofMinutes(5);
+}
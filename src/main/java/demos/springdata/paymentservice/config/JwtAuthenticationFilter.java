@@ -1,6 +1,8 @@
 package demos.springdata.paymentservice.config;
 
+import demos.springdata.paymentservice.model.security.JwtPrincipal;
 import demos.springdata.paymentservice.service.JwtService;
+import demos.springdata.paymentservice.service.VerifiedTokenCache;
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -9,22 +11,22 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
-import java.util.List;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtService jwtService) {
+    public JwtAuthenticationFilter(JwtService jwtService, VerifiedTokenCache verifiedTokenCache) {
         this.jwtService = jwtService;
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     @Override
@@ -44,29 +46,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             final String jwt = authHeader.substring(7);
-            final String userEmail = jwtService.extractUsername(jwt);
+            JwtPrincipal principal = verifiedTokenCache.getIfPresent(jwt);
 
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-
-                List<String> roles = jwtService.extractClaim(jwt, claims -> {
-                    List<?> rawRoles = claims.get("roles", List.class);
-                    if (rawRoles == null) {
-                        return List.of();
-                    }
-                    return rawRoles.stream()
-                            .filter(String.class::isInstance)
-                            .map(String.class::cast)
-                            .toList();
-                });
+            if (principal == null) {
+                principal = jwtService.verify(jwt);
+                verifiedTokenCache.put(jwt, principal);
+            }
 
-                List<SimpleGrantedAuthority> authorities = roles.stream()
-                        .map(SimpleGrantedAuthority::new)
-                        .toList();
+            if (principal.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userEmail,
+                        principal.subject(),
                         null,
-                        authorities
+                        principal.authorities()
                 );
 
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
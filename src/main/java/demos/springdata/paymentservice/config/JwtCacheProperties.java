@@ -0,0 +1,14 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "security.jwt.cache")
+@Data
+public class JwtCacheProperties {
+    private boolean enabled;
+    private long maxEntries = 10_000;
+    private Duration maxTtl = Duration.ofMinutes(15);
+}
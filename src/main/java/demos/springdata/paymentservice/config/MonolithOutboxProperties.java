@@ -0,0 +1,26 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "monolith.outbox")
+@Data
+public class MonolithOutboxProperties {
+    private int batchSize = 50;
+    private Duration pollInterval = Duration.ofSeconds(1);
+    private Duration lease = Duration.ofMinutes(2);
+    private int maxAttempts = 15;
+    private Duration initialBackoff = Duration.ofSeconds(2);
+    private Duration maxBackoff = Duration.ofMinutes(30);
+    private Duration deferDelay = Duration.ofSeconds(15);
+    private Bulk bulk = new Bulk();
+
+    @Data
+    public static class Bulk {
+        private boolean enabled;
+        private int maxBatchSize = 100;
+        private Duration maxLatency = Duration.ofSeconds(2);
+    }
+}
@@ -1,8 +1,12 @@
 package demos.springdata.paymentservice.config;
 
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 
 
 @ConfigurationProperties(prefix = "stripe")
@@ -10,4 +14,20 @@ import org.springframework.context.annotation.Configuration;
 public class StripeProperties {
     private String apiKey;
     private String webhookSecret;
+    private Map<StripeTrafficClass, Client> clients = new EnumMap<>(StripeTrafficClass.class);
+
+    public Client client(StripeTrafficClass trafficClass) {
+        return clients.getOrDefault(trafficClass, new Client());
+    }
+
+    @Data
+    public static class Client {
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofSeconds(30);
+        private int maxNetworkRetries = 2;
+        private int maxConnections = 20;
+        private Duration timeToLive = Duration.ofMinutes(5);
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+    }
 }
@@ -0,0 +1,22 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "stripe.rate-limit")
+@Data
+public class StripeRateLimitProperties {
+    private boolean enabled = true;
+    private double globalRate = 80;
+    private int globalBurst = 20;
+    private double accountRate = 20;
+    private int accountBurst = 5;
+    private double minRate = 1;
+    private double recoveryStep = 0.5;
+    private Duration maxWait = Duration.ofSeconds(2);
+    private Duration defaultRetryAfter = Duration.ofSeconds(1);
+    private long maxAccounts = 10_000;
+    private Duration accountIdleTtl = Duration.ofMinutes(30);
+}
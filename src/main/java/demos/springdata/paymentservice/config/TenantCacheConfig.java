@@ -0,0 +1,55 @@
+package demos.springdata.paymentservice.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import demos.springdata.paymentservice.model.entity.PaymentTenant;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Second-level cache for {@link PaymentTenant}: Hibernate's JCache region factory over bounded in-process Caffeine
+ * caches, one for the entity and one for its {@code tenantId} natural id. Other nodes' writes are evicted by
+ * {@code TenantCacheInvalidationListener}.
+ */
+@Configuration
+public class TenantCacheConfig {
+
+    private static final String CAFFEINE_PROVIDER = "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(TenantCacheProperties properties, MeterRegistry meterRegistry) {
+        CachingProvider provider = Caching.getCachingProvider(CAFFEINE_PROVIDER);
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        for (String region : List.of(PaymentTenant.CACHE_REGION, PaymentTenant.NATURAL_ID_CACHE_REGION)) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(properties.getMaxEntries()));
+            configuration.setExpireAfterWrite(OptionalLong.of(properties.getTtl().toNanos()));
+            configuration.setStatisticsEnabled(true);
+
+            JCacheMetrics.monitor(meterRegistry, cacheManager.createCache(region, configuration));
+        }
+
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(TenantCacheProperties properties, CacheManager hibernateCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put("hibernate.cache.use_second_level_cache", properties.isEnabled());
+            if (properties.isEnabled()) {
+                hibernateProperties.put("hibernate.cache.region.factory_class", "jcache");
+                hibernateProperties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+                hibernateProperties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+            }
+        };
+    }
+}
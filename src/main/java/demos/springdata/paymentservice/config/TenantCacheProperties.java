@@ -0,0 +1,15 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "payments.tenant-cache")
+@Data
+public class TenantCacheProperties {
+    private boolean enabled = true;
+    private long maxEntries = 10_000;
+    private Duration ttl = Duration.ofMinutes(10);
+    private Duration reconnectDelay = Duration.ofSeconds(5);
+}
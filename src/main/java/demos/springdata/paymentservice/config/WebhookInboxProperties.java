@@ -0,0 +1,19 @@
+package demos.springdata.paymentservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "stripe.webhook.inbox")
+@Data
+public class WebhookInboxProperties {
+    private boolean enabled;
+    private int workers = 4;
+    private int batchSize = 20;
+    private Duration pollInterval = Duration.ofMillis(500);
+    private Duration lease = Duration.ofMinutes(5);
+    private int maxAttempts = 10;
+    private Duration initialBackoff = Duration.ofSeconds(5);
+    private Duration maxBackoff = Duration.ofMinutes(30);
+}
@@ -0,0 +1,19 @@
+package demos.springdata.paymentservice.exception;
+
+public class MonolithCallException extends RuntimeException {
+
+    private final int status;
+
+    public MonolithCallException(int status, String message) {
+        super("Monolith responded with " + status + ": " + message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isClientError() {
+        return status >= 400 && status < 500;
+    }
+}
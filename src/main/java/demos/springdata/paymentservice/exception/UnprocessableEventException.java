@@ -0,0 +1,11 @@
+package demos.springdata.paymentservice.exception;
+
+/**
+ * A webhook event that will fail the same way on every attempt, so the inbox parks it instead of retrying.
+ */
+public class UnprocessableEventException extends RuntimeException {
+
+    public UnprocessableEventException(String message) {
+        super(message);
+    }
+}
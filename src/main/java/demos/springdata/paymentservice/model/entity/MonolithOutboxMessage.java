@@ -0,0 +1,55 @@
+package demos.springdata.paymentservice.model.entity;
+
+import demos.springdata.paymentservice.model.enums.ActivationType;
+import demos.springdata.paymentservice.model.enums.OutboxStatus;
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "monolith_outbox")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MonolithOutboxMessage {
+    @Id
+    @UuidGenerator(algorithm = UuidV7Generator.class)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String aggregateKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ActivationType type;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxStatus status;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    private Instant lockedUntil;
+
+    private Instant deliveredAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
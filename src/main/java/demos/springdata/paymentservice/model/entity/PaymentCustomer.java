@@ -1,22 +1,25 @@
 package demos.springdata.paymentservice.model.entity;
 
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.util.UUID;
 
 @Entity
-@Table(name = "payment_customers")
+@Table(name = "payment_customers",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_customers_user_account", columnNames = {"user_id", "stripe_connected_account_id"}))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 public class PaymentCustomer {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @Column(nullable = false)
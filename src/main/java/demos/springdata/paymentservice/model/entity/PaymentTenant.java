@@ -1,23 +1,36 @@
 package demos.springdata.paymentservice.model.entity;
 
 import demos.springdata.paymentservice.model.enums.SubscriptionStatus;
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
 @Table(name = "payment_tenants")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = PaymentTenant.CACHE_REGION)
+@NaturalIdCache(region = PaymentTenant.NATURAL_ID_CACHE_REGION)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 public class PaymentTenant {
+    public static final String CACHE_REGION = "payment-tenants";
+    public static final String NATURAL_ID_CACHE_REGION = "payment-tenants-natural-id";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String tenantId;
 
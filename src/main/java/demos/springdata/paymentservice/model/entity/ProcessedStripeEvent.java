@@ -0,0 +1,26 @@
+package demos.springdata.paymentservice.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "stripe_processed_events")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProcessedStripeEvent {
+    @Id
+    private String eventId;
+
+    @Column(nullable = false)
+    private String eventType;
+
+    @Column(nullable = false)
+    private Instant processedAt;
+}
@@ -1,22 +1,26 @@
 package demos.springdata.paymentservice.model.entity;
 
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "stripe_connect_accounts")
+@Table(name = "stripe_connect_accounts",
+        indexes = @Index(name = "ix_stripe_connect_accounts_stripe_account_id", columnList = "stripe_account_id"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 public class StripeConnectAccount {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
     @Column(nullable = false, unique = true)
     private String tenantId;
@@ -24,4 +28,8 @@ public class StripeConnectAccount {
     private String stripeAccountId;
     private boolean chargesEnabled;
     private boolean payoutsEnabled;
+    private boolean detailsSubmitted;
+    private String cardPaymentsStatus;
+    private String transfersStatus;
+    private Instant stateSyncedAt;
 }
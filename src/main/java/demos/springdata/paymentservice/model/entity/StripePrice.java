@@ -0,0 +1,44 @@
+package demos.springdata.paymentservice.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "stripe_prices")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StripePrice {
+    @Id
+    private UUID id;
+
+    @Column(nullable = false, unique = true, length = 200)
+    private String lookupKey;
+
+    private String stripeAccountId;
+
+    @Column(nullable = false)
+    private String stripePriceId;
+
+    @Column(nullable = false)
+    private String productName;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(nullable = false)
+    private long unitAmount;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private boolean retired;
+}
@@ -0,0 +1,50 @@
+package demos.springdata.paymentservice.model.entity;
+
+import demos.springdata.paymentservice.model.enums.InboxStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "stripe_webhook_inbox")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class WebhookInboxEvent {
+    @Id
+    private UUID id;
+
+    @Column(nullable = false, unique = true)
+    private String eventId;
+
+    @Column(nullable = false)
+    private String eventType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private InboxStatus status;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant receivedAt;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    private Instant lockedUntil;
+
+    private Instant processedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+}
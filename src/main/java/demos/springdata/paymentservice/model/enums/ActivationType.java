@@ -0,0 +1,6 @@
+package demos.springdata.paymentservice.model.enums;
+
+public enum ActivationType {
+    TENANT_SUBSCRIPTION,
+    USER_MEMBERSHIP
+}
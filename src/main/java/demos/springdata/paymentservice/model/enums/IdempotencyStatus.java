@@ -0,0 +1,6 @@
+package demos.springdata.paymentservice.model.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
@@ -0,0 +1,8 @@
+package demos.springdata.paymentservice.model.enums;
+
+public enum InboxStatus {
+    PENDING,
+    PROCESSING,
+    PROCESSED,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package demos.springdata.paymentservice.model.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    IN_FLIGHT,
+    DELIVERED,
+    DEAD
+}
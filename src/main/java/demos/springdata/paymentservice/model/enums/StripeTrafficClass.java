@@ -0,0 +1,7 @@
+package demos.springdata.paymentservice.model.enums;
+
+public enum StripeTrafficClass {
+    SAAS_CHECKOUT,
+    CONNECT_CHECKOUT,
+    ONBOARDING
+}
@@ -0,0 +1,50 @@
+package demos.springdata.paymentservice.model.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RFC 9562 version 7 UUIDs: a 48-bit millisecond timestamp, a 12-bit counter that keeps ids from the same
+ * millisecond increasing, then 62 random bits. New primary keys land on the right edge of the B-tree instead of
+ * a random leaf. Used through {@code @UuidGenerator(algorithm = UuidV7Generator.class)}, and directly via
+ * {@link #next()} where rows are inserted with native SQL.
+ */
+public class UuidV7Generator implements UuidValueGenerator {
+
+    private static final AtomicLong LAST_TIMESTAMP_AND_COUNTER = new AtomicLong();
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    public static UUID next() {
+        long timestampAndCounter = nextTimestampAndCounter(System.currentTimeMillis());
+
+        long mostSigBits = (timestampAndCounter >>> 12) << 16
+                | 0x7000L
+                | (timestampAndCounter & 0xFFFL);
+        long leastSigBits = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Millis in the upper bits, counter in the lower 12. When the counter of one millisecond is exhausted, or the
+     * clock steps back, the value keeps counting up from the last one, so ids stay strictly increasing per node.
+     */
+    private static long nextTimestampAndCounter(long millis) {
+        long candidate = millis << 12;
+        while (true) {
+            long last = LAST_TIMESTAMP_AND_COUNTER.get();
+            long next = Math.max(candidate, last + 1);
+            if (LAST_TIMESTAMP_AND_COUNTER.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package demos.springdata.paymentservice.model.security;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+public record JwtPrincipal(
+        String subject,
+        List<SimpleGrantedAuthority> authorities,
+        Instant expiresAt
+) {
+}
@@ -2,8 +2,11 @@ package demos.springdata.paymentservice.repository;
 
 import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -12,4 +15,12 @@ public interface ConnectRepository extends JpaRepository<StripeConnectAccount, U
     Optional<StripeConnectAccount> findByStripeAccountId(String stripeAccountId);
 
     Optional<StripeConnectAccount> findByTenantId(String tenantId);
+
+    @Query("select c.stripeAccountId from StripeConnectAccount c where c.tenantId = :tenantId")
+    Optional<String> findStripeAccountIdByTenantId(@Param("tenantId") String tenantId);
+
+    boolean existsByStripeAccountId(String stripeAccountId);
+
+    @Query("select c.stripeAccountId from StripeConnectAccount c")
+    List<String> findAllStripeAccountIds();
 }
@@ -0,0 +1,59 @@
+package demos.springdata.paymentservice.repository;
+
+import demos.springdata.paymentservice.model.entity.IdempotencyRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "idempotency_records"))
+    @Query(value = """
+            INSERT INTO idempotency_records (record_key, fingerprint, status, created_at, expires_at)
+            VALUES (:recordKey, :fingerprint, 'IN_PROGRESS', :createdAt, :expiresAt)
+            ON CONFLICT (record_key) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("recordKey") String recordKey,
+              @Param("fingerprint") String fingerprint,
+              @Param("createdAt") Instant createdAt,
+              @Param("expiresAt") Instant expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update IdempotencyRecord r
+               set r.status = demos.springdata.paymentservice.model.enums.IdempotencyStatus.COMPLETED,
+                   r.responseStatus = :responseStatus,
+                   r.responseBody = :responseBody
+             where r.recordKey = :recordKey
+            """)
+    int complete(@Param("recordKey") String recordKey,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("responseBody") String responseBody);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.recordKey = :recordKey and r.status = demos.springdata.paymentservice.model.enums.IdempotencyStatus.IN_PROGRESS")
+    int release(@Param("recordKey") String recordKey);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.recordKey = :recordKey and r.expiresAt < :now")
+    int deleteIfExpired(@Param("recordKey") String recordKey, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,68 @@
+package demos.springdata.paymentservice.repository;
+
+import demos.springdata.paymentservice.model.entity.MonolithOutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface MonolithOutboxRepository extends JpaRepository<MonolithOutboxMessage, UUID> {
+
+    /**
+     * Locks due messages that are at the head of their aggregate's queue, so messages for the same
+     * tenant or user are never delivered out of order or in parallel.
+     */
+    @Query(value = """
+            SELECT * FROM monolith_outbox o
+            WHERE ((o.status = 'PENDING' AND o.next_attempt_at <= :now)
+                OR (o.status = 'IN_FLIGHT' AND o.locked_until < :now))
+              AND NOT EXISTS (
+                  SELECT 1 FROM monolith_outbox earlier
+                  WHERE earlier.aggregate_key = o.aggregate_key
+                    AND earlier.status IN ('PENDING', 'IN_FLIGHT')
+                    AND (earlier.created_at < o.created_at
+                        OR (earlier.created_at = o.created_at AND earlier.id < o.id)))
+            ORDER BY o.created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<MonolithOutboxMessage> lockNextDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    /**
+     * Counts the messages {@link #lockNextDue} could claim right now; rows held back behind an earlier message of
+     * the same aggregate are not part of the deliverable backlog.
+     */
+    @Query("""
+            SELECT count(o) FROM MonolithOutboxMessage o
+            WHERE ((o.status = demos.springdata.paymentservice.model.enums.OutboxStatus.PENDING AND o.nextAttemptAt <= :now)
+                OR (o.status = demos.springdata.paymentservice.model.enums.OutboxStatus.IN_FLIGHT AND o.lockedUntil < :now))
+              AND NOT EXISTS (
+                  SELECT 1 FROM MonolithOutboxMessage earlier
+                  WHERE earlier.aggregateKey = o.aggregateKey
+                    AND earlier.status IN (demos.springdata.paymentservice.model.enums.OutboxStatus.PENDING,
+                                           demos.springdata.paymentservice.model.enums.OutboxStatus.IN_FLIGHT)
+                    AND (earlier.createdAt < o.createdAt
+                        OR (earlier.createdAt = o.createdAt AND earlier.id < o.id)))
+            """)
+    long countClaimable(@Param("now") Instant now);
+
+    @Query("""
+            SELECT min(o.createdAt) FROM MonolithOutboxMessage o
+            WHERE ((o.status = demos.springdata.paymentservice.model.enums.OutboxStatus.PENDING AND o.nextAttemptAt <= :now)
+                OR (o.status = demos.springdata.paymentservice.model.enums.OutboxStatus.IN_FLIGHT AND o.lockedUntil < :now))
+              AND NOT EXISTS (
+                  SELECT 1 FROM MonolithOutboxMessage earlier
+                  WHERE earlier.aggregateKey = o.aggregateKey
+                    AND earlier.status IN (demos.springdata.paymentservice.model.enums.OutboxStatus.PENDING,
+                                           demos.springdata.paymentservice.model.enums.OutboxStatus.IN_FLIGHT)
+                    AND (earlier.createdAt < o.createdAt
+                        OR (earlier.createdAt = o.createdAt AND earlier.id < o.id)))
+            """)
+    Optional<Instant> findOldestClaimableCreatedAt(@Param("now") Instant now);
+}
@@ -1,8 +1,15 @@
 package demos.springdata.paymentservice.repository;
 
 import demos.springdata.paymentservice.model.entity.PaymentCustomer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -10,5 +17,38 @@ import java.util.UUID;
 @Repository
 public interface PaymentCustomerRepository extends JpaRepository<PaymentCustomer, UUID> {
     Optional<PaymentCustomer> findByUserId(String userId);
-    Optional<PaymentCustomer> findByUserIdAndStripeConnectedAccountId(String userId, String stripeAccount);
+
+    @Query("select c.stripeCustomerId from PaymentCustomer c where c.userId = :userId and c.stripeConnectedAccountId = :stripeAccount")
+    Optional<String> findStripeCustomerId(@Param("userId") String userId, @Param("stripeAccount") String stripeAccount);
+
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "payment_customers"))
+    @Query(value = """
+            INSERT INTO payment_customers (id, user_id, stripe_customer_id, stripe_connected_account_id)
+            VALUES (:id, :userId, :stripeCustomerId, :stripeConnectedAccountId)
+            ON CONFLICT (user_id, stripe_connected_account_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id,
+                       @Param("userId") String userId,
+                       @Param("stripeCustomerId") String stripeCustomerId,
+                       @Param("stripeConnectedAccountId") String stripeConnectedAccountId);
+
+    /**
+     * Records the customer a checkout settled with; rewrites the row only when the customer actually changed.
+     */
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "payment_customers"))
+    @Query(value = """
+            INSERT INTO payment_customers (id, user_id, stripe_customer_id, stripe_connected_account_id)
+            VALUES (:id, :userId, :stripeCustomerId, :stripeConnectedAccountId)
+            ON CONFLICT (user_id, stripe_connected_account_id) DO UPDATE
+                SET stripe_customer_id = EXCLUDED.stripe_customer_id
+                WHERE payment_customers.stripe_customer_id IS DISTINCT FROM EXCLUDED.stripe_customer_id
+            """, nativeQuery = true)
+    int upsert(@Param("id") UUID id,
+               @Param("userId") String userId,
+               @Param("stripeCustomerId") String stripeCustomerId,
+               @Param("stripeConnectedAccountId") String stripeConnectedAccountId);
 }
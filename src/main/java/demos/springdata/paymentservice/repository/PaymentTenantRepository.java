@@ -2,12 +2,48 @@ package demos.springdata.paymentservice.repository;
 
 import demos.springdata.paymentservice.model.entity.PaymentTenant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface PaymentTenantRepository extends JpaRepository<PaymentTenant, UUID> {
-    Optional<PaymentTenant> findByTenantId(String tenantId);
+public interface PaymentTenantRepository extends JpaRepository<PaymentTenant, UUID>, PaymentTenantRepositoryCustom {
+    /**
+     * Creates the tenant as INACTIVE or refreshes its contact details, and returns the Stripe customer already on
+     * record, if any.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO payment_tenants (id, tenant_id, name, business_email, status)
+            VALUES (:id, :tenantId, :name, :businessEmail, 'INACTIVE')
+            ON CONFLICT (tenant_id) DO UPDATE
+                SET name = EXCLUDED.name,
+                    business_email = EXCLUDED.business_email
+            RETURNING stripe_customer_id
+            """, nativeQuery = true)
+    Optional<String> upsertContactDetails(@Param("id") UUID id,
+                                          @Param("tenantId") String tenantId,
+                                          @Param("name") String name,
+                                          @Param("businessEmail") String businessEmail);
+
+    /**
+     * Attaches the Stripe customer unless a concurrent request attached one first, and returns whichever is stored.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO payment_tenants (id, tenant_id, name, business_email, stripe_customer_id, status)
+            VALUES (:id, :tenantId, :name, :businessEmail, :stripeCustomerId, 'INACTIVE')
+            ON CONFLICT (tenant_id) DO UPDATE
+                SET stripe_customer_id = COALESCE(payment_tenants.stripe_customer_id, EXCLUDED.stripe_customer_id)
+            RETURNING stripe_customer_id
+            """, nativeQuery = true)
+    String upsertStripeCustomer(@Param("id") UUID id,
+                                @Param("tenantId") String tenantId,
+                                @Param("name") String name,
+                                @Param("businessEmail") String businessEmail,
+                                @Param("stripeCustomerId") String stripeCustomerId);
 }
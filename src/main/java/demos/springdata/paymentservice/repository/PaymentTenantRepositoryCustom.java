@@ -0,0 +1,13 @@
+package demos.springdata.paymentservice.repository;
+
+import demos.springdata.paymentservice.model.entity.PaymentTenant;
+
+import java.util.Optional;
+
+public interface PaymentTenantRepositoryCustom {
+
+    /**
+     * Loads by natural id, so repeated lookups are answered from the second-level cache instead of a query.
+     */
+    Optional<PaymentTenant> findByTenantId(String tenantId);
+}
@@ -0,0 +1,23 @@
+package demos.springdata.paymentservice.repository;
+
+import demos.springdata.paymentservice.model.entity.PaymentTenant;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public class PaymentTenantRepositoryCustomImpl implements PaymentTenantRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<PaymentTenant> findByTenantId(String tenantId) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(PaymentTenant.class)
+                .loadOptional(tenantId);
+    }
+}
@@ -0,0 +1,55 @@
+package demos.springdata.paymentservice.repository;
+
+import demos.springdata.paymentservice.model.entity.StripePrice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface StripePriceRepository extends JpaRepository<StripePrice, UUID> {
+
+    Optional<StripePrice> findByLookupKey(String lookupKey);
+
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stripe_prices"))
+    @Query(value = """
+            INSERT INTO stripe_prices (id, lookup_key, stripe_account_id, stripe_price_id, product_name, currency, unit_amount, created_at)
+            VALUES (:id, :lookupKey, :stripeAccountId, :stripePriceId, :productName, :currency, :unitAmount, :createdAt)
+            ON CONFLICT (lookup_key) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id,
+                       @Param("lookupKey") String lookupKey,
+                       @Param("stripeAccountId") String stripeAccountId,
+                       @Param("stripePriceId") String stripePriceId,
+                       @Param("productName") String productName,
+                       @Param("currency") String currency,
+                       @Param("unitAmount") long unitAmount,
+                       @Param("createdAt") Instant createdAt);
+
+    @Modifying
+    @Transactional
+    @Query("update StripePrice p set p.retired = true where p.lookupKey = :lookupKey and p.stripePriceId = :stripePriceId")
+    int markRetired(@Param("lookupKey") String lookupKey, @Param("stripePriceId") String stripePriceId);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update StripePrice p set p.stripePriceId = :stripePriceId, p.retired = false, p.createdAt = :createdAt
+            where p.lookupKey = :lookupKey and p.stripePriceId = :retiredPriceId and p.retired = true
+            """)
+    int replaceRetired(@Param("lookupKey") String lookupKey,
+                       @Param("retiredPriceId") String retiredPriceId,
+                       @Param("stripePriceId") String stripePriceId,
+                       @Param("createdAt") Instant createdAt);
+}
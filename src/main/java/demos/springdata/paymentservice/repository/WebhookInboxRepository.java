@@ -0,0 +1,44 @@
+package demos.springdata.paymentservice.repository;
+
+import demos.springdata.paymentservice.model.entity.WebhookInboxEvent;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WebhookInboxRepository extends JpaRepository<WebhookInboxEvent, UUID> {
+
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "stripe_webhook_inbox"))
+    @Query(value = """
+            INSERT INTO stripe_webhook_inbox (id, event_id, event_type, payload, status, attempts, received_at, next_attempt_at)
+            VALUES (:id, :eventId, :eventType, :payload, 'PENDING', 0, :receivedAt, :receivedAt)
+            ON CONFLICT (event_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id,
+                       @Param("eventId") String eventId,
+                       @Param("eventType") String eventType,
+                       @Param("payload") String payload,
+                       @Param("receivedAt") Instant receivedAt);
+
+    @Query(value = """
+            SELECT * FROM stripe_webhook_inbox
+            WHERE (status = 'PENDING' AND next_attempt_at <= :now)
+               OR (status = 'PROCESSING' AND locked_until < :now)
+            ORDER BY received_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<WebhookInboxEvent> lockNextDue(@Param("now") Instant now, @Param("limit") int limit);
+}
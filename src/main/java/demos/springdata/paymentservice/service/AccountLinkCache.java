@@ -0,0 +1,99 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.stripe.exception.StripeException;
+import demos.springdata.paymentservice.web.dto.AccountLinkResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out the same onboarding link for a (connected account, returnUrl, refreshUrl) until shortly before
+ * Stripe expires it. Concurrent requests for the same key wait for a single {@code AccountLink.create}, which runs
+ * outside the cache so lookups of other keys never wait on Stripe.
+ */
+@Component
+public class AccountLinkCache {
+
+    private final Cache<LinkKey, AccountLinkResponse> links;
+    private final SingleFlight<LinkKey, AccountLinkResponse> creations = new SingleFlight<>();
+    private final long expiryMarginSeconds;
+
+    @Autowired
+    public AccountLinkCache(MeterRegistry meterRegistry,
+                            @Value("${stripe.connect.account-link-cache.max-entries:10000}") long maxEntries,
+                            @Value("${stripe.connect.account-link-cache.expiry-margin:30s}") Duration expiryMargin) {
+        this.expiryMarginSeconds = expiryMargin.toSeconds();
+        this.links = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<LinkKey, AccountLinkResponse>() {
+                    @Override
+                    public long expireAfterCreate(LinkKey key, AccountLinkResponse link, long currentTime) {
+                        return ttlNanos(link);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(LinkKey key, AccountLinkResponse link, long currentTime, long currentDuration) {
+                        return ttlNanos(link);
+                    }
+
+                    @Override
+                    public long expireAfterRead(LinkKey key, AccountLinkResponse link, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, links, "connect-account-links");
+    }
+
+    public AccountLinkResponse get(String connectedAccountId, String returnUrl, String refreshUrl, LinkFactory factory) throws StripeException {
+        LinkKey key = new LinkKey(connectedAccountId, returnUrl, refreshUrl);
+
+        AccountLinkResponse cached = links.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return creations.execute(key, () -> {
+            AccountLinkResponse link = links.getIfPresent(key);
+            if (link == null) {
+                link = factory.create();
+                links.put(key, link);
+            }
+            return link;
+        });
+    }
+
+    public void invalidate(String connectedAccountId, String returnUrl, String refreshUrl) {
+        links.invalidate(new LinkKey(connectedAccountId, returnUrl, refreshUrl));
+    }
+
+    public void invalidateAccount(String connectedAccountId) {
+        links.asMap().keySet().removeIf(key -> key.connectedAccountId().equals(connectedAccountId));
+    }
+
+    private long ttlNanos(AccountLinkResponse link) {
+        if (link.getExpiresAt() == null) {
+            return 0;
+        }
+        long remainingSeconds = link.getExpiresAt() - expiryMarginSeconds - System.currentTimeMillis() / 1000;
+        return Math.max(0, TimeUnit.SECONDS.toNanos(remainingSeconds));
+    }
+
+    @FunctionalInterface
+    public interface LinkFactory {
+        AccountLinkResponse create() throws StripeException;
+    }
+
+    private record LinkKey(String connectedAccountId, String returnUrl, String refreshUrl) {
+    }
+}
@@ -0,0 +1,166 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.stripe.exception.StripeException;
+import com.stripe.model.checkout.Session;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived registry of open checkout sessions keyed by a digest of the request, so a customer who goes back
+ * and clicks checkout again gets the session that is already open. Entries leave on the completed and expired
+ * webhooks, shortly before Stripe's own {@code expires_at}, or after {@code max-ttl}, whichever comes first.
+ * <p>
+ * Only the node that receives a webhook evicts on it, so a cached session is confirmed to still be {@code open}
+ * with Stripe before it is handed out again.
+ */
+@Component
+public class CheckoutSessionRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckoutSessionRegistry.class);
+
+    private static final String OPEN = "open";
+
+    private final Cache<String, Session> sessions;
+    private final Map<String, String> keysBySessionId = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Session> creations = new SingleFlight<>();
+    private final long maxTtlNanos;
+    private final long expiryMarginSeconds;
+
+    @Autowired
+    public CheckoutSessionRegistry(MeterRegistry meterRegistry,
+                                   @Value("${stripe.checkout.session-reuse.max-entries:10000}") long maxEntries,
+                                   @Value("${stripe.checkout.session-reuse.max-ttl:30m}") Duration maxTtl,
+                                   @Value("${stripe.checkout.session-reuse.expiry-margin:5m}") Duration expiryMargin) {
+        this.maxTtlNanos = maxTtl.toNanos();
+        this.expiryMarginSeconds = expiryMargin.toSeconds();
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Session>() {
+                    @Override
+                    public long expireAfterCreate(String key, Session session, long currentTime) {
+                        return ttlNanos(session);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Session session, long currentTime, long currentDuration) {
+                        return ttlNanos(session);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Session session, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((String key, Session session, RemovalCause cause) -> {
+                    if (session != null && session.getId() != null) {
+                        keysBySessionId.remove(session.getId(), key);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, sessions, "checkout-sessions");
+    }
+
+    /**
+     * Returns the session registered for the same request if {@code retriever} still reports it open, or creates
+     * one. Concurrent identical requests wait for a single {@code Session.create}, which runs outside the cache so
+     * other keys are never blocked on it.
+     */
+    public Session getOrCreate(String requestKey, SessionRetriever retriever, SessionFactory factory) throws StripeException {
+        Session cached = sessions.getIfPresent(requestKey);
+        if (cached != null) {
+            if (isStillOpen(cached, retriever)) {
+                return cached;
+            }
+            keysBySessionId.remove(cached.getId(), requestKey);
+            sessions.asMap().remove(requestKey, cached);
+        }
+
+        return creations.execute(requestKey, () -> {
+            Session session = sessions.getIfPresent(requestKey);
+            if (session == null) {
+                session = factory.create();
+                register(requestKey, session);
+            }
+            return session;
+        });
+    }
+
+    public void evict(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        String key = keysBySessionId.remove(sessionId);
+        if (key != null) {
+            sessions.invalidate(key);
+        }
+    }
+
+    public static String requestKey(Object... parts) {
+        StringBuilder canonical = new StringBuilder();
+        for (Object part : parts) {
+            canonical.append(part).append('\u001f');
+        }
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void register(String requestKey, Session session) {
+        if (session == null || session.getId() == null) {
+            return;
+        }
+        keysBySessionId.put(session.getId(), requestKey);
+        sessions.put(requestKey, session);
+    }
+
+    private static boolean isStillOpen(Session cached, SessionRetriever retriever) {
+        try {
+            Session current = retriever.retrieve(cached.getId());
+            return current != null && OPEN.equals(current.getStatus());
+        } catch (StripeException e) {
+            LOGGER.warn("Could not confirm checkout session {} is still open, opening a new one: {}", cached.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private long ttlNanos(Session session) {
+        if (session == null || !OPEN.equals(session.getStatus()) || session.getUrl() == null || session.getExpiresAt() == null) {
+            return 0;
+        }
+        long remainingSeconds = session.getExpiresAt() - expiryMarginSeconds - System.currentTimeMillis() / 1000;
+        return Math.max(0, Math.min(TimeUnit.SECONDS.toNanos(remainingSeconds), maxTtlNanos));
+    }
+
+    @FunctionalInterface
+    public interface SessionRetriever {
+        Session retrieve(String sessionId) throws StripeException;
+    }
+
+    @FunctionalInterface
+    public interface SessionFactory {
+        Session create() throws StripeException;
+    }
+}
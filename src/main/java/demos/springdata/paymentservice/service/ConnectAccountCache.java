@@ -0,0 +1,150 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import demos.springdata.paymentservice.config.ConnectAccountCacheProperties;
+import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
+import demos.springdata.paymentservice.repository.ConnectRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through cache in front of {@link ConnectRepository} for the tenant to connected-account mapping,
+ * which is written once at onboarding and read on every checkout.
+ */
+@Component
+public class ConnectAccountCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectAccountCache.class);
+
+    private final ConnectRepository connectRepository;
+    private final ConnectAccountCacheProperties properties;
+    private final Cache<String, StripeConnectAccount> byStripeAccountId;
+    private final Cache<String, StripeConnectAccount> byTenantId;
+
+    @Autowired
+    public ConnectAccountCache(ConnectRepository connectRepository, ConnectAccountCacheProperties properties, MeterRegistry meterRegistry) {
+        this.connectRepository = connectRepository;
+        this.properties = properties;
+
+        if (!properties.isEnabled()) {
+            this.byStripeAccountId = null;
+            this.byTenantId = null;
+            return;
+        }
+
+        this.byStripeAccountId = newCache(properties);
+        this.byTenantId = newCache(properties);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byStripeAccountId, "connect-accounts.by-stripe-account");
+        CaffeineCacheMetrics.monitor(meterRegistry, byTenantId, "connect-accounts.by-tenant");
+    }
+
+    public Optional<StripeConnectAccount> findByStripeAccountId(String stripeAccountId) {
+        if (byStripeAccountId == null) {
+            return connectRepository.findByStripeAccountId(stripeAccountId);
+        }
+        return Optional.ofNullable(byStripeAccountId.get(stripeAccountId,
+                key -> connectRepository.findByStripeAccountId(key).orElse(null)));
+    }
+
+    public Optional<StripeConnectAccount> findByTenantId(String tenantId) {
+        if (byTenantId == null) {
+            return connectRepository.findByTenantId(tenantId);
+        }
+        return Optional.ofNullable(byTenantId.get(tenantId,
+                key -> connectRepository.findByTenantId(key).orElse(null)));
+    }
+
+    /**
+     * Reads the row from the database and replaces the cached copy. Entries are only invalidated on the node that
+     * handled the {@code account.updated} webhook, so callers about to reject a request on cached state re-check here.
+     */
+    public Optional<StripeConnectAccount> reloadByStripeAccountId(String stripeAccountId) {
+        Optional<StripeConnectAccount> account = connectRepository.findByStripeAccountId(stripeAccountId);
+        if (byStripeAccountId != null) {
+            account.ifPresentOrElse(found -> {
+                byStripeAccountId.put(found.getStripeAccountId(), found);
+                byTenantId.put(found.getTenantId(), found);
+            }, () -> byStripeAccountId.invalidate(stripeAccountId));
+        }
+        return account;
+    }
+
+    /**
+     * Only the account id: taken from a cached row if there is one, otherwise read as a single column without
+     * loading or caching the entity.
+     */
+    public Optional<String> findStripeAccountIdByTenantId(String tenantId) {
+        StripeConnectAccount cached = byTenantId != null ? byTenantId.getIfPresent(tenantId) : null;
+        if (cached != null) {
+            return Optional.of(cached.getStripeAccountId());
+        }
+        return connectRepository.findStripeAccountIdByTenantId(tenantId);
+    }
+
+    /**
+     * Drops both entries for the account; inside a transaction this happens after commit so that a concurrent
+     * read cannot put the old row back.
+     */
+    public void invalidate(StripeConnectAccount account) {
+        if (byStripeAccountId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(account);
+                }
+            });
+            return;
+        }
+        evict(account);
+    }
+
+    private void evict(StripeConnectAccount account) {
+        if (account.getStripeAccountId() != null) {
+            byStripeAccountId.invalidate(account.getStripeAccountId());
+        }
+        if (account.getTenantId() != null) {
+            byTenantId.invalidate(account.getTenantId());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (byStripeAccountId == null || !properties.isWarmUp()) {
+            return;
+        }
+
+        int limit = (int) Math.min(properties.getMaxEntries(), Integer.MAX_VALUE);
+        List<StripeConnectAccount> accounts = connectRepository.findAll(PageRequest.of(0, limit)).getContent();
+        for (StripeConnectAccount account : accounts) {
+            byStripeAccountId.put(account.getStripeAccountId(), account);
+            byTenantId.put(account.getTenantId(), account);
+        }
+
+        LOGGER.info("Warmed connected-account cache with {} accounts", accounts.size());
+    }
+
+    private static Cache<String, StripeConnectAccount> newCache(ConnectAccountCacheProperties properties) {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+    }
+}
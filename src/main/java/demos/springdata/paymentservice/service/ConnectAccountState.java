@@ -0,0 +1,36 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.model.Account;
+import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
+
+import java.time.Instant;
+
+/**
+ * Copies the onboarding and capability state of a Stripe account onto the local record.
+ */
+final class ConnectAccountState {
+
+    static final String ACTIVE = "active";
+
+    private ConnectAccountState() {
+    }
+
+    static void apply(StripeConnectAccount entity, Account account, Instant syncedAt) {
+        entity.setChargesEnabled(Boolean.TRUE.equals(account.getChargesEnabled()));
+        entity.setPayoutsEnabled(Boolean.TRUE.equals(account.getPayoutsEnabled()));
+        entity.setDetailsSubmitted(Boolean.TRUE.equals(account.getDetailsSubmitted()));
+
+        Account.Capabilities capabilities = account.getCapabilities();
+        entity.setCardPaymentsStatus(capabilities != null ? capabilities.getCardPayments() : null);
+        entity.setTransfersStatus(capabilities != null ? capabilities.getTransfers() : null);
+        entity.setStateSyncedAt(syncedAt);
+    }
+
+    static boolean canAcceptCardPayments(StripeConnectAccount entity) {
+        if (entity.getStateSyncedAt() == null) {
+            return true;
+        }
+        return entity.isChargesEnabled()
+                && (entity.getCardPaymentsStatus() == null || ACTIVE.equals(entity.getCardPaymentsStatus()));
+    }
+}
@@ -0,0 +1,115 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Customer;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.CustomerCreateParams;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
+import demos.springdata.paymentservice.repository.PaymentCustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Resolves the Stripe customer of a member on a connected account, creating it at most once.
+ * <p>
+ * Concurrent callers for the same (user, account) pair share one in-flight resolution. Across nodes the
+ * customer is created with a deterministic idempotency key and stored with an insert that yields to the
+ * unique key on {@code payment_customers}, so every node ends up with the same customer id.
+ */
+@Service
+public class ConnectCustomerResolver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectCustomerResolver.class);
+
+    private final PaymentCustomerRepository paymentCustomerRepository;
+    private final StripeClientRegistry stripeClients;
+    private final StripeRateLimiter stripeRateLimiter;
+    private final Cache<CustomerKey, String> resolvedCustomers;
+    private final SingleFlight<CustomerKey, String> resolutions = new SingleFlight<>();
+
+    @Autowired
+    public ConnectCustomerResolver(PaymentCustomerRepository paymentCustomerRepository,
+                                   StripeClientRegistry stripeClients,
+                                   StripeRateLimiter stripeRateLimiter,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${stripe.connect.customer-cache.max-entries:50000}") long maxEntries,
+                                   @Value("${stripe.connect.customer-cache.ttl:1h}") Duration ttl) {
+        this.paymentCustomerRepository = paymentCustomerRepository;
+        this.stripeClients = stripeClients;
+        this.stripeRateLimiter = stripeRateLimiter;
+        this.resolvedCustomers = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, resolvedCustomers, "connect-customers");
+    }
+
+    public String resolve(String userId, String email, String name, String stripeAccount) {
+        CustomerKey key = new CustomerKey(userId, stripeAccount);
+
+        String cached = resolvedCustomers.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return resolutions.execute(key, () -> {
+            String customerId = findOrCreate(key, email, name);
+            resolvedCustomers.put(key, customerId);
+            return customerId;
+        });
+    }
+
+    private String findOrCreate(CustomerKey key, String email, String name) {
+        return paymentCustomerRepository.findStripeCustomerId(key.userId(), key.stripeAccount())
+                .orElseGet(() -> create(key, email, name));
+    }
+
+    private String create(CustomerKey key, String email, String name) {
+        Customer customer;
+        try {
+            CustomerCreateParams params = CustomerCreateParams.builder()
+                    .setEmail(email)
+                    .setName(name)
+                    .setMetadata(Map.of("localUserId", key.userId()))
+                    .build();
+
+            RequestOptions options = RequestOptions.builder()
+                    .setStripeAccount(key.stripeAccount())
+                    .setIdempotencyKey("customer-" + key.stripeAccount() + "-" + key.userId())
+                    .build();
+
+            customer = stripeRateLimiter.call(key.stripeAccount(),
+                    () -> stripeClients.get(StripeTrafficClass.CONNECT_CHECKOUT).customers().create(params, options));
+        } catch (StripeException e) {
+            throw new RuntimeException("Error creating Stripe customer", e);
+        }
+
+        int inserted = paymentCustomerRepository.insertIfAbsent(UuidV7Generator.next(), key.userId(), customer.getId(), key.stripeAccount());
+        if (inserted == 1) {
+            return customer.getId();
+        }
+
+        String winner = paymentCustomerRepository.findStripeCustomerId(key.userId(), key.stripeAccount())
+                .orElse(customer.getId());
+        if (!winner.equals(customer.getId())) {
+            LOGGER.warn("Stripe customer {} lost the race for user {} on {}; using {}", customer.getId(), key.userId(), key.stripeAccount(), winner);
+        }
+        return winner;
+    }
+
+    private record CustomerKey(String userId, String stripeAccount) {
+    }
+}
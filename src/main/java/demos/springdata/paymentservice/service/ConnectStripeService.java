@@ -1,21 +1,19 @@
 package demos.springdata.paymentservice.service;
 
+import com.stripe.StripeClient;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Account;
 import com.stripe.model.AccountLink;
-import com.stripe.model.Customer;
 import com.stripe.model.StripeError;
 import com.stripe.model.checkout.Session;
 import com.stripe.net.RequestOptions;
 import com.stripe.param.AccountCreateParams;
 import com.stripe.param.AccountLinkCreateParams;
-import com.stripe.param.CustomerCreateParams;
 import com.stripe.param.checkout.SessionCreateParams;
 import demos.springdata.paymentservice.exception.PaymentException;
-import demos.springdata.paymentservice.model.entity.PaymentCustomer;
 import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
 import demos.springdata.paymentservice.repository.ConnectRepository;
-import demos.springdata.paymentservice.repository.PaymentCustomerRepository;
 import demos.springdata.paymentservice.web.dto.AccountLinkResponse;
 import demos.springdata.paymentservice.web.dto.ConnectedCheckoutRequest;
 import demos.springdata.paymentservice.web.dto.TenantDto;
@@ -25,7 +23,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -34,25 +32,40 @@ public class ConnectStripeService {
 
     private final ConnectRepository connectRepository;
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectStripeService.class);
-    private final PaymentCustomerRepository paymentCustomerRepository;
+    private final ConnectCustomerResolver connectCustomerResolver;
+    private final ConnectAccountCache connectAccountCache;
+    private final KnownConnectAccounts knownConnectAccounts;
+    private final AccountLinkCache accountLinkCache;
+    private final PriceCatalogService priceCatalogService;
+    private final CheckoutSessionRegistry checkoutSessionRegistry;
+    private final StripeClientRegistry stripeClients;
+    private final StripeRateLimiter stripeRateLimiter;
 
     @Autowired
-    public ConnectStripeService(ConnectRepository connectRepository, PaymentCustomerRepository paymentCustomerRepository) {
+    public ConnectStripeService(ConnectRepository connectRepository, ConnectCustomerResolver connectCustomerResolver, ConnectAccountCache connectAccountCache,
+                                KnownConnectAccounts knownConnectAccounts, AccountLinkCache accountLinkCache, PriceCatalogService priceCatalogService,
+                                CheckoutSessionRegistry checkoutSessionRegistry, StripeClientRegistry stripeClients, StripeRateLimiter stripeRateLimiter) {
         this.connectRepository = connectRepository;
-        this.paymentCustomerRepository = paymentCustomerRepository;
+        this.connectCustomerResolver = connectCustomerResolver;
+        this.connectAccountCache = connectAccountCache;
+        this.knownConnectAccounts = knownConnectAccounts;
+        this.accountLinkCache = accountLinkCache;
+        this.priceCatalogService = priceCatalogService;
+        this.checkoutSessionRegistry = checkoutSessionRegistry;
+        this.stripeClients = stripeClients;
+        this.stripeRateLimiter = stripeRateLimiter;
     }
 
-    public Account createConnectedAccount(TenantDto tenant) throws StripeException {
+    public String createConnectedAccount(TenantDto tenant) throws StripeException {
 
         String tenantIdString = tenant.getId().toString();
 
-        Optional<StripeConnectAccount> existingEntry = connectRepository.findByTenantId(tenantIdString);
+        Optional<String> existingStripeId = connectAccountCache.findStripeAccountIdByTenantId(tenantIdString);
 
-        if (existingEntry.isPresent()) {
-            String existingStripeId = existingEntry.get().getStripeAccountId();
-            LOGGER.info("Tenant with ID {} already has a Stripe account: {}", tenantIdString, existingStripeId);
+        if (existingStripeId.isPresent()) {
+            LOGGER.info("Tenant with ID {} already has a Stripe account: {}", tenantIdString, existingStripeId.get());
 
-            return Account.retrieve(existingStripeId);
+            return existingStripeId.get();
         }
 
         AccountCreateParams.Capabilities capabilities =
@@ -82,57 +95,101 @@ public class ConnectStripeService {
                         )
                         .build();
 
-        Account account = Account.create(params);
+        Account account = stripeRateLimiter.call(null,
+                () -> stripeClients.get(StripeTrafficClass.ONBOARDING).accounts().create(params, IdempotencyKeyHolder.requestOptions("account").build()));
 
         StripeConnectAccount entity = new StripeConnectAccount();
         entity.setTenantId(tenant.getId().toString());
         entity.setStripeAccountId(account.getId());
+        ConnectAccountState.apply(entity, account, Instant.now());
         connectRepository.save(entity);
+        connectAccountCache.invalidate(entity);
+        knownConnectAccounts.register(account.getId());
 
-        return account;
+        return account.getId();
     }
 
     public AccountLinkResponse createAccountLink(String connectedAccountId, String returnUrl, String refreshUrl) throws StripeException {
+        return createAccountLink(connectedAccountId, returnUrl, refreshUrl, false);
+    }
 
-        StripeConnectAccount connectAccount = connectRepository.findByStripeAccountId(connectedAccountId)
-                .orElseThrow(() -> new PaymentException("Tenant not connected to Stripe", HttpStatus.NOT_FOUND));
+    /**
+     * Links are single-use, so callers coming back through the refresh URL should pass {@code renew} to get a
+     * new one instead of the cached link.
+     */
+    public AccountLinkResponse createAccountLink(String connectedAccountId, String returnUrl, String refreshUrl, boolean renew) throws StripeException {
 
-        AccountLinkCreateParams params =
-                AccountLinkCreateParams.builder()
-                        .setAccount(connectAccount.getStripeAccountId())
-                        .setRefreshUrl(refreshUrl)
-                        .setReturnUrl(returnUrl)
-                        .setType(AccountLinkCreateParams.Type.ACCOUNT_ONBOARDING)
-                        .setCollect(AccountLinkCreateParams.Collect.EVENTUALLY_DUE)
-                        .build();
+        StripeConnectAccount connectAccount = findConnectedAccount(connectedAccountId);
 
-        Account account = Account.retrieve(connectAccount.getStripeAccountId());
+        if (renew) {
+            accountLinkCache.invalidate(connectAccount.getStripeAccountId(), returnUrl, refreshUrl);
+        }
 
-        LOGGER.info("Account email: {}", account.getEmail());
+        return accountLinkCache.get(connectAccount.getStripeAccountId(), returnUrl, refreshUrl, () -> {
+            AccountLinkCreateParams params =
+                    AccountLinkCreateParams.builder()
+                            .setAccount(connectAccount.getStripeAccountId())
+                            .setRefreshUrl(refreshUrl)
+                            .setReturnUrl(returnUrl)
+                            .setType(AccountLinkCreateParams.Type.ACCOUNT_ONBOARDING)
+                            .setCollect(AccountLinkCreateParams.Collect.EVENTUALLY_DUE)
+                            .build();
+
+            AccountLink accountLink = stripeRateLimiter.call(null,
+                    () -> stripeClients.get(StripeTrafficClass.ONBOARDING).accountLinks().create(params, IdempotencyKeyHolder.requestOptions("account-link").build()));
+
+            LOGGER.info("Account link info: {}", accountLink);
+
+            return AccountLinkResponse.builder()
+                    .url(accountLink.getUrl())
+                    .created(accountLink.getCreated())
+                    .expiresAt(accountLink.getExpiresAt())
+                    .build();
+        });
+    }
 
-        AccountLink accountLink = AccountLink.create(params);
 
-        LOGGER.info("Account link info: {}", accountLink);
+    public Session createMemberCheckoutSession(String stripeAccountId, ConnectedCheckoutRequest request) throws StripeException {
 
-        return AccountLinkResponse.builder()
-                .url(accountLink.getUrl())
-                .created(accountLink.getCreated())
-                .expiresAt(accountLink.getExpiresAt())
-                .build();
-    }
+        StripeConnectAccount cachedAccount = findConnectedAccount(stripeAccountId);
 
+        StripeConnectAccount connectAccount = ConnectAccountState.canAcceptCardPayments(cachedAccount)
+                ? cachedAccount
+                : connectAccountCache.reloadByStripeAccountId(stripeAccountId).orElse(cachedAccount);
 
-    public Session createMemberCheckoutSession(String stripeAccountId, ConnectedCheckoutRequest request) throws StripeException {
+        if (!ConnectAccountState.canAcceptCardPayments(connectAccount)) {
+            throw new PaymentException("Stripe Account Incomplete: card payments are not enabled for " + stripeAccountId, HttpStatus.BAD_REQUEST);
+        }
 
-        StripeConnectAccount connectAccount = connectRepository.findByStripeAccountId(stripeAccountId)
-                .orElseThrow(() -> new RuntimeException("Tenant not connected to Stripe"));
+        String requestKey = CheckoutSessionRegistry.requestKey("GYM_MEMBERSHIP", connectAccount.getStripeAccountId(), request.getUserId(),
+                request.getSubscriptionPlan(), request.getEmployment(), request.getAllowedVisits(), request.getAmount(), request.getCurrency());
 
+        return checkoutSessionRegistry.getOrCreate(requestKey,
+                sessionId -> retrieveMemberCheckoutSession(connectAccount.getStripeAccountId(), sessionId),
+                () -> openMemberCheckoutSession(connectAccount, request));
+    }
+
+    private Session retrieveMemberCheckoutSession(String stripeAccountId, String sessionId) throws StripeException {
+        StripeClient stripe = stripeClients.get(StripeTrafficClass.CONNECT_CHECKOUT);
         RequestOptions options = RequestOptions.builder()
+                .setStripeAccount(stripeAccountId)
+                .build();
+        return stripeRateLimiter.call(stripeAccountId, () -> stripe.checkout().sessions().retrieve(sessionId, options));
+    }
+
+    private Session openMemberCheckoutSession(StripeConnectAccount connectAccount, ConnectedCheckoutRequest request) throws StripeException {
+
+        StripeClient stripe = stripeClients.get(StripeTrafficClass.CONNECT_CHECKOUT);
+
+        RequestOptions options = IdempotencyKeyHolder.requestOptions("session")
                 .setStripeAccount(connectAccount.getStripeAccountId())
                 .build();
 
 
-        String customerId = getOrCreateStripeCustomer(request.getUserId().toString(), request.getEmail(), request.getName(), options);
+        String customerId = connectCustomerResolver.resolve(request.getUserId().toString(), request.getEmail(), request.getName(), connectAccount.getStripeAccountId());
+
+        String priceId = priceCatalogService.resolvePriceId(connectAccount.getStripeAccountId(), request.getSubscriptionPlan(), request.getEmployment(),
+                request.getCurrency(), request.getAmount());
 
         SessionCreateParams params =
                 SessionCreateParams.builder()
@@ -142,17 +199,7 @@ public class ConnectStripeService {
                         .addLineItem(
                                 SessionCreateParams.LineItem.builder()
                                         .setQuantity(1L)
-                                        .setPriceData(
-                                                SessionCreateParams.LineItem.PriceData.builder()
-                                                        .setCurrency(request.getCurrency())
-                                                        .setUnitAmount(request.getAmount())
-                                                        .setProductData(
-                                                                SessionCreateParams.LineItem.PriceData.ProductData.builder()
-                                                                        .setName(request.getSubscriptionPlan() + " - " + request.getEmployment())
-                                                                        .build()
-                                                        )
-                                                        .build()
-                                        )
+                                        .setPrice(priceId)
                                         .build()
                         )
                         .setMode(SessionCreateParams.Mode.PAYMENT)
@@ -170,7 +217,7 @@ public class ConnectStripeService {
 
 
         try {
-            return Session.create(params, options);
+            return stripeRateLimiter.call(connectAccount.getStripeAccountId(), () -> stripe.checkout().sessions().create(params, options));
         } catch (StripeException ex) {
             StripeError error = ex.getStripeError();
 
@@ -184,32 +231,12 @@ public class ConnectStripeService {
 
     }
 
-    private String getOrCreateStripeCustomer(String userId, String email, String name, RequestOptions options) {
-
-        return paymentCustomerRepository.findByUserIdAndStripeConnectedAccountId(userId, options.getStripeAccount())
-                .map(PaymentCustomer::getStripeCustomerId)
-                .orElseGet(() -> {
-                    try {
-                        CustomerCreateParams params = CustomerCreateParams.builder()
-                                .setEmail(email)
-                                .setName(name)
-                                .setMetadata(Map.of("localUserId", userId))
-                                .build();
-
-                        Customer customer = Customer.create(params, options);
-
-                        PaymentCustomer newCustomerEntity = PaymentCustomer.builder()
-                                .userId(userId)
-                                .stripeCustomerId(customer.getId())
-                                .stripeConnectedAccountId(options.getStripeAccount())
-                                .build();
-
-                        paymentCustomerRepository.save(newCustomerEntity);
-                        return customer.getId();
-                    } catch (StripeException e) {
-                        throw new RuntimeException("Error creating Stripe customer", e);
-                    }
-                });
+    private StripeConnectAccount findConnectedAccount(String stripeAccountId) {
+        if (!knownConnectAccounts.mightExist(stripeAccountId)) {
+            throw new PaymentException("Tenant not connected to Stripe", HttpStatus.NOT_FOUND);
+        }
+        return connectAccountCache.findByStripeAccountId(stripeAccountId)
+                .orElseThrow(() -> new PaymentException("Tenant not connected to Stripe", HttpStatus.NOT_FOUND));
     }
 
 
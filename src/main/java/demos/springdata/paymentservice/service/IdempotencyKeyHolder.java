@@ -0,0 +1,40 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.net.RequestOptions;
+
+/**
+ * Carries the client's {@code Idempotency-Key} of the request being executed, so Stripe calls made while
+ * serving it can send a derived key and Stripe de-duplicates retries as well.
+ */
+public final class IdempotencyKeyHolder {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private IdempotencyKeyHolder() {
+    }
+
+    static void set(String recordKey) {
+        CURRENT.set(recordKey);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts request options for one Stripe operation, with {@code <key>:<operation>} as idempotency key when a
+     * client key is present.
+     */
+    public static RequestOptions.RequestOptionsBuilder requestOptions(String operation) {
+        RequestOptions.RequestOptionsBuilder builder = RequestOptions.builder();
+        String key = CURRENT.get();
+        if (key != null) {
+            builder.setIdempotencyKey(key + ":" + operation);
+        }
+        return builder;
+    }
+}
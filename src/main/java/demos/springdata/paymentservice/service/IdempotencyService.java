@@ -0,0 +1,246 @@
+package demos.springdata.paymentservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stripe.exception.StripeException;
+import demos.springdata.paymentservice.config.IdempotencyProperties;
+import demos.springdata.paymentservice.exception.PaymentException;
+import demos.springdata.paymentservice.model.entity.IdempotencyRecord;
+import demos.springdata.paymentservice.model.enums.IdempotencyStatus;
+import demos.springdata.paymentservice.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executes a payment request at most once per caller and {@code Idempotency-Key} and replays the stored response
+ * for retries. Completed responses are kept in memory and in {@code idempotency_records} until they expire; a retry
+ * that arrives while the first attempt is still running on this node waits for it, on another node it gets a 409.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 200;
+    private static final String ANONYMOUS = "anonymous";
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final IdempotencyProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, StoredResponse> completed;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, IdempotencyProperties properties,
+                              ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(properties.getMemoryEntries())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotent-responses");
+    }
+
+    public <T> ResponseEntity<T> execute(String scope, String idempotencyKey, Object request, Class<T> responseType,
+                                         IdempotentAction<T> action) throws StripeException {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.execute();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new PaymentException("Idempotency-Key must not be longer than " + MAX_KEY_LENGTH + " characters", HttpStatus.BAD_REQUEST);
+        }
+
+        String recordKey = scope + ":" + sha256(caller() + "\n" + idempotencyKey);
+        String fingerprint = fingerprint(scope, request);
+
+        StoredResponse stored = completed.getIfPresent(recordKey);
+        if (stored != null) {
+            return replay(stored, fingerprint, responseType);
+        }
+
+        InFlight attempt = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(recordKey, attempt);
+        if (running != null) {
+            requireSameRequest(running.fingerprint(), fingerprint);
+            return replay(await(running), fingerprint, responseType);
+        }
+
+        try {
+            return claimAndExecute(recordKey, attempt, responseType, action);
+        } catch (StripeException | RuntimeException e) {
+            attempt.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(recordKey, attempt);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payments.idempotency.cleanup-interval:1h}")
+    public void deleteExpired() {
+        int deleted = idempotencyRecordRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            LOGGER.info("Deleted {} expired idempotency records", deleted);
+        }
+    }
+
+    private <T> ResponseEntity<T> claimAndExecute(String recordKey, InFlight attempt, Class<T> responseType,
+                                                  IdempotentAction<T> action) throws StripeException {
+        String fingerprint = attempt.fingerprint();
+
+        if (!claim(recordKey, fingerprint)) {
+            IdempotencyRecord existing = idempotencyRecordRepository.findById(recordKey)
+                    .orElseThrow(IdempotencyService::inProgress);
+
+            if (existing.getExpiresAt().isBefore(Instant.now())) {
+                LOGGER.info("Idempotent request {} expired, executing it as a new one", recordKey);
+                idempotencyRecordRepository.deleteIfExpired(recordKey, Instant.now());
+                if (!claim(recordKey, fingerprint)) {
+                    throw inProgress();
+                }
+            } else if (existing.getStatus() != IdempotencyStatus.COMPLETED) {
+                requireSameRequest(existing.getFingerprint(), fingerprint);
+                if (!existing.getCreatedAt().isBefore(Instant.now().minus(properties.getInProgressLease()))) {
+                    throw inProgress();
+                }
+                LOGGER.warn("Taking over abandoned idempotent request {}", recordKey);
+                idempotencyRecordRepository.release(recordKey);
+                if (!claim(recordKey, fingerprint)) {
+                    throw inProgress();
+                }
+            } else {
+                requireSameRequest(existing.getFingerprint(), fingerprint);
+                StoredResponse stored = new StoredResponse(existing.getFingerprint(), existing.getResponseStatus(), existing.getResponseBody());
+                completed.put(recordKey, stored);
+                attempt.result().complete(stored);
+                return replay(stored, fingerprint, responseType);
+            }
+        }
+
+        IdempotencyKeyHolder.set(recordKey);
+        try {
+            ResponseEntity<T> response = action.execute();
+
+            StoredResponse stored = new StoredResponse(fingerprint, response.getStatusCode().value(), write(response.getBody()));
+            idempotencyRecordRepository.complete(recordKey, stored.status(), stored.body());
+            completed.put(recordKey, stored);
+            attempt.result().complete(stored);
+            return response;
+        } catch (StripeException | RuntimeException e) {
+            idempotencyRecordRepository.release(recordKey);
+            throw e;
+        } finally {
+            IdempotencyKeyHolder.clear();
+        }
+    }
+
+    private boolean claim(String recordKey, String fingerprint) {
+        Instant now = Instant.now();
+        return idempotencyRecordRepository.claim(recordKey, fingerprint, now, now.plus(properties.getTtl())) == 1;
+    }
+
+    private StoredResponse await(InFlight running) throws StripeException {
+        try {
+            return running.result().get(properties.getInFlightWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse stored, String fingerprint, Class<T> responseType) {
+        requireSameRequest(stored.fingerprint(), fingerprint);
+        try {
+            return ResponseEntity.status(stored.status())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(objectMapper.readValue(stored.body(), responseType));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response cannot be read", e);
+        }
+    }
+
+    private static void requireSameRequest(String storedFingerprint, String fingerprint) {
+        if (!storedFingerprint.equals(fingerprint)) {
+            throw new PaymentException("Idempotency-Key was already used for a different request", HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+    }
+
+    private static PaymentException inProgress() {
+        return new PaymentException("A request with this Idempotency-Key is still being processed", HttpStatus.CONFLICT);
+    }
+
+    private String fingerprint(String scope, Object request) {
+        return sha256(scope + "\n" + write(request));
+    }
+
+    private static String caller() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : ANONYMOUS;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Value cannot be serialized for idempotency", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface IdempotentAction<T> {
+        ResponseEntity<T> execute() throws StripeException;
+    }
+
+    private record StoredResponse(String fingerprint, int status, String body) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<StoredResponse> result) {
+    }
+}
@@ -1,6 +1,8 @@
 package demos.springdata.paymentservice.service;
 
+import demos.springdata.paymentservice.model.security.JwtPrincipal;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -8,8 +10,14 @@ import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 import java.security.Key;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Service
@@ -19,6 +27,10 @@ public class JwtService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtService.class);
 
+    private final Map<String, SimpleGrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+    private JwtParser jwtParser;
+
 
     @PostConstruct
     public void init() {
@@ -29,10 +41,37 @@ public class JwtService {
             String maskedKey = secretKey.length() > 10 ? secretKey.substring(0, 6) + "..." : "Too short";
             LOGGER.info("SUCCESS: Secret Key loaded. Length: {}", secretKey.length());
             LOGGER.info("Key Preview: {}", maskedKey);
+
+            jwtParser = Jwts
+                    .parserBuilder()
+                    .setSigningKey(getSignInKey())
+                    .build();
         }
         LOGGER.info("=== SECURITY DEBUG END ===");
     }
 
+    public JwtPrincipal verify(String token) {
+        final Claims claims = extractAllClaims(token);
+
+        List<?> rawRoles = claims.get("roles", List.class);
+        List<SimpleGrantedAuthority> grantedAuthorities = new ArrayList<>();
+        if (rawRoles != null) {
+            for (Object role : rawRoles) {
+                if (role instanceof String name) {
+                    grantedAuthorities.add(authorities.computeIfAbsent(name, SimpleGrantedAuthority::new));
+                }
+            }
+        }
+
+        Date expiration = claims.getExpiration();
+
+        return new JwtPrincipal(
+                claims.getSubject(),
+                List.copyOf(grantedAuthorities),
+                expiration != null ? expiration.toInstant() : null
+        );
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -43,10 +82,10 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
+        if (jwtParser == null) {
+            throw new IllegalStateException("JWT secret key is not configured");
+        }
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
     }
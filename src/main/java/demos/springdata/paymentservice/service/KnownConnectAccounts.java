@@ -0,0 +1,94 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import demos.springdata.paymentservice.config.ConnectAccountCacheProperties;
+import demos.springdata.paymentservice.repository.ConnectRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Answers whether a connected-account id can belong to one of our tenants without a query in the common case.
+ * Ids that are malformed or were recently looked up and not found are rejected from memory. An id created on
+ * another instance is picked up by the database fallback on first use, unless this instance cached a miss for it:
+ * then it keeps answering not-found until that entry expires ({@code stripe.connect.account-cache.unknown-ttl}).
+ * Accounts created on this instance drop their negative entry right away.
+ */
+@Component
+public class KnownConnectAccounts {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KnownConnectAccounts.class);
+
+    private static final Pattern ACCOUNT_ID = Pattern.compile("acct_[A-Za-z0-9_]{1,250}");
+
+    private final ConnectRepository connectRepository;
+    private final Set<String> knownIds = ConcurrentHashMap.newKeySet();
+    private final Cache<String, Boolean> unknownIds;
+    private final Counter knownLookups;
+    private final Counter rejectedLookups;
+    private final Counter databaseLookups;
+
+    @Autowired
+    public KnownConnectAccounts(ConnectRepository connectRepository, ConnectAccountCacheProperties properties, MeterRegistry meterRegistry) {
+        this.connectRepository = connectRepository;
+        this.unknownIds = Caffeine.newBuilder()
+                .maximumSize(properties.getUnknownMaxEntries())
+                .expireAfterWrite(properties.getUnknownTtl())
+                .build();
+        this.knownLookups = lookupCounter(meterRegistry, "known");
+        this.rejectedLookups = lookupCounter(meterRegistry, "rejected");
+        this.databaseLookups = lookupCounter(meterRegistry, "database");
+    }
+
+    public boolean mightExist(String stripeAccountId) {
+        if (stripeAccountId == null || !ACCOUNT_ID.matcher(stripeAccountId).matches()) {
+            rejectedLookups.increment();
+            return false;
+        }
+        if (knownIds.contains(stripeAccountId)) {
+            knownLookups.increment();
+            return true;
+        }
+        if (unknownIds.getIfPresent(stripeAccountId) != null) {
+            rejectedLookups.increment();
+            return false;
+        }
+
+        databaseLookups.increment();
+        if (connectRepository.existsByStripeAccountId(stripeAccountId)) {
+            knownIds.add(stripeAccountId);
+            return true;
+        }
+        unknownIds.put(stripeAccountId, Boolean.TRUE);
+        return false;
+    }
+
+    public void register(String stripeAccountId) {
+        knownIds.add(stripeAccountId);
+        unknownIds.invalidate(stripeAccountId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<String> ids = connectRepository.findAllStripeAccountIds();
+        knownIds.addAll(ids);
+        LOGGER.info("Loaded {} known connected-account ids", ids.size());
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("stripe.connect.account-lookups")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
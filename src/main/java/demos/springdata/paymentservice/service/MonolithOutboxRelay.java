@@ -0,0 +1,197 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.client.ResilientMonolithClient;
+import demos.springdata.paymentservice.config.MonolithOutboxProperties;
+import demos.springdata.paymentservice.model.entity.MonolithOutboxMessage;
+import demos.springdata.paymentservice.model.enums.ActivationType;
+import demos.springdata.paymentservice.web.dto.ActivationResult;
+import demos.springdata.paymentservice.web.dto.MembershipActivationItem;
+import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import demos.springdata.paymentservice.web.dto.TenantActivationItem;
+import demos.springdata.paymentservice.web.dto.TenantActivationRequest;
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Delivers {@code monolith_outbox} rows to the monolith. Rows are claimed and acknowledged in their own
+ * short transactions; no database connection is held while the remote call is in progress. Single
+ * activations of a batch are sent concurrently over the non-blocking client, at most as many at a time as the
+ * monolith bulkheads admit.
+ * With {@code monolith.outbox.bulk.enabled} due rows are coalesced into the monolith's bulk endpoints, and at least
+ * {@code bulk.max-batch-size} rows are claimed per cycle so a size-triggered cycle fills a whole bulk request.
+ * While the monolith's circuit is open, or a call is turned away by local back-pressure, rows are pushed back by
+ * {@code monolith.outbox.defer-delay} without spending a delivery attempt.
+ */
+@Component
+public class MonolithOutboxRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonolithOutboxRelay.class);
+
+    private final MonolithOutboxService outboxService;
+    private final ResilientMonolithClient monolithClient;
+    private final MonolithOutboxProperties properties;
+
+    @Autowired
+    public MonolithOutboxRelay(MonolithOutboxService outboxService, ResilientMonolithClient monolithClient, MonolithOutboxProperties properties) {
+        this.outboxService = outboxService;
+        this.monolithClient = monolithClient;
+        this.properties = properties;
+    }
+
+    @Scheduled(fixedDelayString = "${monolith.outbox.poll-interval:1s}")
+    public void relay() {
+        MonolithOutboxProperties.Bulk bulk = properties.getBulk();
+
+        if (bulk.isEnabled() && !outboxService.isBatchReady(bulk.getMaxBatchSize(), bulk.getMaxLatency())) {
+            return;
+        }
+
+        int batchSize = bulk.isEnabled() ? Math.max(properties.getBatchSize(), bulk.getMaxBatchSize()) : properties.getBatchSize();
+        List<MonolithOutboxMessage> batch = outboxService.claimNextBatch(batchSize);
+
+        if (bulk.isEnabled()) {
+            deliverInBulk(batch, ActivationType.TENANT_SUBSCRIPTION);
+            deliverInBulk(batch, ActivationType.USER_MEMBERSHIP);
+        } else {
+            deliverEach(batch);
+        }
+    }
+
+    private void deliverEach(List<MonolithOutboxMessage> messages) {
+        Semaphore window = new Semaphore(Math.max(1, monolithClient.getMaxConcurrentCalls()));
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>(messages.size());
+
+        for (MonolithOutboxMessage message : messages) {
+            window.acquireUninterruptibly();
+            deliveries.add(deliverOne(message).whenComplete((ignored, error) -> window.release()));
+        }
+
+        CompletableFuture.allOf(deliveries.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private CompletableFuture<Void> deliverOne(MonolithOutboxMessage message) {
+        CompletableFuture<Void> delivery;
+        try {
+            delivery = deliver(message);
+        } catch (Exception ex) {
+            delivery = CompletableFuture.failedFuture(ex);
+        }
+
+        return delivery.handle((ignored, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            try {
+                if (cause == null) {
+                    outboxService.markDelivered(message.getId());
+                } else if (cause instanceof CallNotPermittedException || cause instanceof BulkheadFullException
+                        || cause instanceof RejectedExecutionException) {
+                    defer(List.of(message), (RuntimeException) cause);
+                } else {
+                    LOGGER.warn("Delivery of {} for {} failed (attempt {})", message.getType(), message.getAggregateKey(), message.getAttempts(), cause);
+                    outboxService.markFailed(message.getId(), cause instanceof Exception ex ? ex : new RuntimeException(cause));
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.error("Could not record the outcome of {} for {}", message.getType(), message.getAggregateKey(), ex);
+            }
+            return null;
+        });
+    }
+
+    private CompletableFuture<Void> deliver(MonolithOutboxMessage message) {
+        return switch (message.getType()) {
+            case TENANT_SUBSCRIPTION -> {
+                TenantActivationRequest request = outboxService.readPayload(message, TenantActivationRequest.class);
+                yield monolithClient.activateTenantSubscription(request.tenantId(), request.planName(), request.abonnementDuration());
+            }
+            case USER_MEMBERSHIP -> {
+                SubscriptionRequest request = outboxService.readPayload(message, SubscriptionRequest.class);
+                yield monolithClient.activateUserMembership(message.getAggregateKey(), request);
+            }
+        };
+    }
+
+    private void deliverInBulk(List<MonolithOutboxMessage> batch, ActivationType type) {
+        List<MonolithOutboxMessage> messages = batch.stream()
+                .filter(message -> message.getType() == type)
+                .toList();
+
+        int chunkSize = properties.getBulk().getMaxBatchSize();
+        for (int from = 0; from < messages.size(); from += chunkSize) {
+            deliverChunk(messages.subList(from, Math.min(from + chunkSize, messages.size())), type);
+        }
+    }
+
+    private void deliverChunk(List<MonolithOutboxMessage> chunk, ActivationType type) {
+        List<ActivationResult> results;
+        try {
+            results = switch (type) {
+                case TENANT_SUBSCRIPTION -> monolithClient.activateTenantSubscriptions(chunk.stream()
+                        .map(message -> {
+                            TenantActivationRequest request = outboxService.readPayload(message, TenantActivationRequest.class);
+                            return new TenantActivationItem(message.getId().toString(), request.tenantId(), request.planName(), request.abonnementDuration());
+                        })
+                        .toList());
+                case USER_MEMBERSHIP -> monolithClient.activateUserMemberships(chunk.stream()
+                        .map(message -> new MembershipActivationItem(message.getId().toString(), message.getAggregateKey(),
+                                outboxService.readPayload(message, SubscriptionRequest.class)))
+                        .toList());
+            };
+        } catch (CallNotPermittedException | BulkheadFullException ex) {
+            defer(chunk, ex);
+            return;
+        } catch (FeignException.NotFound ex) {
+            LOGGER.warn("Monolith has no bulk endpoint for {}, delivering {} messages one by one", type, chunk.size());
+            deliverEach(chunk);
+            return;
+        } catch (Exception ex) {
+            LOGGER.warn("Bulk delivery of {} {} messages failed", chunk.size(), type, ex);
+            chunk.forEach(message -> outboxService.markFailed(message.getId(), ex));
+            return;
+        }
+
+        applyResults(chunk, results);
+    }
+
+    private void defer(List<MonolithOutboxMessage> messages, RuntimeException reason) {
+        LOGGER.info("Monolith not accepting calls ({}), deferring {} messages", reason.getMessage(), messages.size());
+        outboxService.defer(messages.stream().map(MonolithOutboxMessage::getId).toList(), properties.getDeferDelay(), String.valueOf(reason));
+    }
+
+    private void applyResults(List<MonolithOutboxMessage> chunk, List<ActivationResult> results) {
+        Map<String, ActivationResult> resultsById = new HashMap<>();
+        if (results != null) {
+            results.forEach(result -> resultsById.put(result.requestId(), result));
+        }
+
+        List<UUID> delivered = new ArrayList<>();
+        for (MonolithOutboxMessage message : chunk) {
+            ActivationResult result = resultsById.get(message.getId().toString());
+
+            if (result != null && result.activated()) {
+                delivered.add(message.getId());
+            } else {
+                String error = result == null ? "No result returned for request " + message.getId() : String.valueOf(result.error());
+                outboxService.markFailed(message.getId(), error);
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            outboxService.markAllDelivered(delivered);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package demos.springdata.paymentservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import demos.springdata.paymentservice.config.MonolithOutboxProperties;
+import demos.springdata.paymentservice.model.entity.MonolithOutboxMessage;
+import demos.springdata.paymentservice.model.enums.ActivationType;
+import demos.springdata.paymentservice.model.enums.OutboxStatus;
+import demos.springdata.paymentservice.repository.MonolithOutboxRepository;
+import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import demos.springdata.paymentservice.web.dto.TenantActivationRequest;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class MonolithOutboxService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonolithOutboxService.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final MonolithOutboxRepository outboxRepository;
+    private final MonolithOutboxProperties properties;
+    private final ObjectMapper objectMapper;
+    private final RetryBackoff backoff;
+
+    @Autowired
+    public MonolithOutboxService(MonolithOutboxRepository outboxRepository, MonolithOutboxProperties properties, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.backoff = new RetryBackoff(properties.getInitialBackoff(), properties.getMaxBackoff());
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueueTenantActivation(String tenantId, String planName, String abonnementDuration) {
+        enqueue(tenantId, ActivationType.TENANT_SUBSCRIPTION, new TenantActivationRequest(tenantId, planName, abonnementDuration));
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueueMembershipActivation(String userId, SubscriptionRequest request) {
+        enqueue(userId, ActivationType.USER_MEMBERSHIP, request);
+    }
+
+    @Transactional
+    public List<MonolithOutboxMessage> claimNextBatch(int limit) {
+        Instant now = Instant.now();
+        List<MonolithOutboxMessage> batch = outboxRepository.lockNextDue(now, limit);
+
+        for (MonolithOutboxMessage message : batch) {
+            message.setStatus(OutboxStatus.IN_FLIGHT);
+            message.setAttempts(message.getAttempts() + 1);
+            message.setLockedUntil(now.plus(properties.getLease()));
+        }
+        return batch;
+    }
+
+    /**
+     * A bulk delivery is worth sending once enough rows can be claimed, or once the oldest claimable row has
+     * waited for {@code maxLatency}.
+     */
+    public boolean isBatchReady(int batchSize, Duration maxLatency) {
+        Instant now = Instant.now();
+        long claimable = outboxRepository.countClaimable(now);
+
+        if (claimable == 0) {
+            return false;
+        }
+        if (claimable >= batchSize) {
+            return true;
+        }
+        return outboxRepository.findOldestClaimableCreatedAt(now)
+                .map(oldest -> !oldest.plus(maxLatency).isAfter(now))
+                .orElse(false);
+    }
+
+    @Transactional
+    public void markAllDelivered(Collection<UUID> ids) {
+        Instant now = Instant.now();
+        for (MonolithOutboxMessage message : outboxRepository.findAllById(ids)) {
+            message.setStatus(OutboxStatus.DELIVERED);
+            message.setDeliveredAt(now);
+            message.setLockedUntil(null);
+            message.setLastError(null);
+        }
+    }
+
+    @Transactional
+    public void markDelivered(UUID id) {
+        outboxRepository.findById(id).ifPresent(message -> {
+            message.setStatus(OutboxStatus.DELIVERED);
+            message.setDeliveredAt(Instant.now());
+            message.setLockedUntil(null);
+            message.setLastError(null);
+        });
+    }
+
+    /**
+     * Puts claimed rows back without counting the attempt, for deliveries that were never sent.
+     */
+    @Transactional
+    public void defer(Collection<UUID> ids, Duration delay, String reason) {
+        Instant nextAttemptAt = Instant.now().plus(delay);
+        for (MonolithOutboxMessage message : outboxRepository.findAllById(ids)) {
+            message.setStatus(OutboxStatus.PENDING);
+            message.setAttempts(Math.max(0, message.getAttempts() - 1));
+            message.setLockedUntil(null);
+            message.setNextAttemptAt(nextAttemptAt);
+            message.setLastError(truncate(reason));
+        }
+    }
+
+    @Transactional
+    public void markFailed(UUID id, Exception error) {
+        markFailed(id, String.valueOf(error));
+    }
+
+    @Transactional
+    public void markFailed(UUID id, String error) {
+        outboxRepository.findById(id).ifPresent(message -> {
+            message.setLockedUntil(null);
+            message.setLastError(truncate(error));
+
+            if (message.getAttempts() >= properties.getMaxAttempts()) {
+                message.setStatus(OutboxStatus.DEAD);
+                LOGGER.error("Giving up on {} for {} after {} attempts", message.getType(), message.getAggregateKey(), message.getAttempts());
+                return;
+            }
+
+            message.setStatus(OutboxStatus.PENDING);
+            message.setNextAttemptAt(Instant.now().plus(backoff.delayFor(message.getAttempts())));
+        });
+    }
+
+    public <T> T readPayload(MonolithOutboxMessage message, Class<T> type) {
+        try {
+            return objectMapper.readValue(message.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outbox payload " + message.getId(), e);
+        }
+    }
+
+    private void enqueue(String aggregateKey, ActivationType type, Object payload) {
+        Instant now = Instant.now();
+
+        MonolithOutboxMessage message = MonolithOutboxMessage.builder()
+                .aggregateKey(aggregateKey)
+                .type(type)
+                .payload(writePayload(payload))
+                .status(OutboxStatus.PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+
+        outboxRepository.save(message);
+    }
+
+    private String writePayload(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize outbox payload", e);
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,188 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stripe.StripeClient;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Price;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PriceCreateParams;
+import demos.springdata.paymentservice.exception.PaymentException;
+import demos.springdata.paymentservice.model.entity.StripePrice;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
+import demos.springdata.paymentservice.repository.StripePriceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Maps a (connected account, plan, term, currency, amount) combination to a reusable Stripe Price, so checkout
+ * sessions reference a price id instead of creating a product and a price inline every time.
+ * <p>
+ * Prices are created on first use, stored in {@code stripe_prices} and kept in memory. A background job marks
+ * prices that were archived in Stripe as retired, so the next checkout creates a replacement. The replacement's
+ * idempotency key names the retired price, so Stripe cannot answer it with the original create's response.
+ */
+@Service
+public class PriceCatalogService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriceCatalogService.class);
+
+    private static final String PLATFORM = "platform";
+
+    private final StripePriceRepository stripePriceRepository;
+    private final StripeClientRegistry stripeClients;
+    private final StripeRateLimiter stripeRateLimiter;
+    private final Cache<String, String> priceIds;
+
+    @Autowired
+    public PriceCatalogService(StripePriceRepository stripePriceRepository,
+                               StripeClientRegistry stripeClients,
+                               StripeRateLimiter stripeRateLimiter,
+                               MeterRegistry meterRegistry,
+                               @Value("${stripe.prices.cache-size:10000}") long cacheSize) {
+        this.stripePriceRepository = stripePriceRepository;
+        this.stripeClients = stripeClients;
+        this.stripeRateLimiter = stripeRateLimiter;
+        this.priceIds = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, priceIds, "stripe-prices");
+    }
+
+    /**
+     * @param stripeAccountId the connected account the price lives on, or {@code null} for platform prices
+     */
+    public String resolvePriceId(String stripeAccountId, String plan, String term, String currency, long unitAmount) throws StripeException {
+        String lookupKey = lookupKey(stripeAccountId, plan, term, currency, unitAmount);
+
+        String cached = priceIds.getIfPresent(lookupKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        StripePrice stored = stripePriceRepository.findByLookupKey(lookupKey).orElse(null);
+
+        String priceId;
+        if (stored != null && !stored.isRetired()) {
+            priceId = stored.getStripePriceId();
+        } else {
+            String retiredPriceId = stored != null ? stored.getStripePriceId() : null;
+            priceId = createPrice(lookupKey, retiredPriceId, stripeAccountId, plan + " - " + term, currency.toLowerCase(Locale.ROOT), unitAmount);
+        }
+
+        priceIds.put(lookupKey, priceId);
+        return priceId;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        List<StripePrice> prices = stripePriceRepository.findAll().stream()
+                .filter(price -> !price.isRetired())
+                .toList();
+        prices.forEach(price -> priceIds.put(price.getLookupKey(), price.getStripePriceId()));
+        LOGGER.info("Loaded {} catalog prices", prices.size());
+    }
+
+    @Scheduled(fixedDelayString = "${stripe.prices.refresh-interval:6h}", initialDelayString = "${stripe.prices.refresh-interval:6h}")
+    public void refresh() {
+        for (StripePrice price : stripePriceRepository.findAll()) {
+            if (price.isRetired()) {
+                continue;
+            }
+            try {
+                Price remote = stripeRateLimiter.call(price.getStripeAccountId(),
+                        () -> stripe(price.getStripeAccountId()).prices().retrieve(price.getStripePriceId(), requestOptions(price.getStripeAccountId(), null)));
+                if (Boolean.TRUE.equals(remote.getActive())) {
+                    priceIds.put(price.getLookupKey(), price.getStripePriceId());
+                    continue;
+                }
+
+                stripePriceRepository.markRetired(price.getLookupKey(), price.getStripePriceId());
+                priceIds.invalidate(price.getLookupKey());
+                LOGGER.info("Retired archived price {} ({})", price.getStripePriceId(), price.getLookupKey());
+            } catch (StripeException e) {
+                LOGGER.warn("Could not refresh price {}: {}", price.getStripePriceId(), e.getMessage());
+            } catch (PaymentException e) {
+                LOGGER.warn("Stopping price refresh at {}: {}", price.getStripePriceId(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private String createPrice(String lookupKey, String retiredPriceId, String stripeAccountId, String productName, String currency,
+                               long unitAmount) throws StripeException {
+        PriceCreateParams params = PriceCreateParams.builder()
+                .setCurrency(currency)
+                .setUnitAmount(unitAmount)
+                .setLookupKey(lookupKey)
+                .setTransferLookupKey(true)
+                .setProductData(PriceCreateParams.ProductData.builder()
+                        .setName(productName)
+                        .build())
+                .build();
+
+        Price price = stripeRateLimiter.call(stripeAccountId,
+                () -> stripe(stripeAccountId).prices().create(params, requestOptions(stripeAccountId, idempotencyKey(lookupKey, retiredPriceId))));
+
+        int stored = retiredPriceId == null
+                ? stripePriceRepository.insertIfAbsent(UuidV7Generator.next(), lookupKey, stripeAccountId, price.getId(),
+                        productName, currency, unitAmount, Instant.now())
+                : stripePriceRepository.replaceRetired(lookupKey, retiredPriceId, price.getId(), Instant.now());
+        if (stored == 1) {
+            LOGGER.info("Created catalog price {} for {}", price.getId(), lookupKey);
+            return price.getId();
+        }
+
+        return stripePriceRepository.findByLookupKey(lookupKey)
+                .filter(winner -> !winner.isRetired())
+                .map(StripePrice::getStripePriceId)
+                .orElse(price.getId());
+    }
+
+    /**
+     * The lookup key covers the whole request; a replacement also names the price it replaces, since Stripe keeps
+     * answering a repeated key with the first response for 24 hours.
+     */
+    static String idempotencyKey(String lookupKey, String retiredPriceId) {
+        return retiredPriceId == null ? "price-" + lookupKey : "price-" + lookupKey + "-replaces-" + retiredPriceId;
+    }
+
+    private StripeClient stripe(String stripeAccountId) {
+        return stripeClients.get(stripeAccountId != null ? StripeTrafficClass.CONNECT_CHECKOUT : StripeTrafficClass.SAAS_CHECKOUT);
+    }
+
+    private static RequestOptions requestOptions(String stripeAccountId, String idempotencyKey) {
+        RequestOptions.RequestOptionsBuilder builder = RequestOptions.builder();
+        if (stripeAccountId != null) {
+            builder.setStripeAccount(stripeAccountId);
+        }
+        if (idempotencyKey != null) {
+            builder.setIdempotencyKey(idempotencyKey);
+        }
+        return builder.build();
+    }
+
+    static String lookupKey(String stripeAccountId, String plan, String term, String currency, long unitAmount) {
+        return String.join(":",
+                stripeAccountId != null ? stripeAccountId : PLATFORM,
+                plan,
+                term,
+                currency.toLowerCase(Locale.ROOT),
+                Long.toString(unitAmount));
+    }
+}
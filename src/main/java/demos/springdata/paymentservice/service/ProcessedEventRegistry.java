@@ -0,0 +1,107 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stripe.model.Event;
+import demos.springdata.paymentservice.repository.ProcessedEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Remembers which Stripe event ids were already handled. Recently seen ids are answered from memory;
+ * everything else is decided by the unique key of {@code stripe_processed_events}.
+ */
+@Service
+public class ProcessedEventRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessedEventRegistry.class);
+
+    private final ProcessedEventRepository processedEventRepository;
+    private final Cache<String, Boolean> recentEventIds;
+    private final Counter acceptedEvents;
+    private final Counter duplicateEvents;
+
+    @Autowired
+    public ProcessedEventRegistry(ProcessedEventRepository processedEventRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${stripe.webhook.dedup.recent-ids:100000}") long recentIds,
+                                  @Value("${stripe.webhook.dedup.recent-ttl:72h}") Duration recentTtl) {
+        this.processedEventRepository = processedEventRepository;
+        this.recentEventIds = Caffeine.newBuilder()
+                .maximumSize(recentIds)
+                .expireAfterWrite(recentTtl)
+                .build();
+        this.acceptedEvents = Counter.builder("stripe.webhook.events")
+                .tag("outcome", "accepted")
+                .register(meterRegistry);
+        this.duplicateEvents = Counter.builder("stripe.webhook.events")
+                .tag("outcome", "duplicate")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers from memory only, so a redelivery can be dropped before a connection is taken from the pool.
+     */
+    public boolean isRecentlyProcessed(Event event) {
+        String eventId = event.getId();
+        if (eventId == null || recentEventIds.getIfPresent(eventId) == null) {
+            return false;
+        }
+        return duplicate(eventId);
+    }
+
+    /**
+     * Records the event as processed and reports whether it had been recorded before. When called inside a
+     * transaction the record is rolled back together with it, so a failed event can still be redelivered.
+     */
+    public boolean isDuplicate(Event event) {
+        String eventId = event.getId();
+        if (eventId == null) {
+            return false;
+        }
+
+        if (recentEventIds.getIfPresent(eventId) != null) {
+            return duplicate(eventId);
+        }
+
+        int inserted = processedEventRepository.insertIfAbsent(eventId, event.getType(), Instant.now());
+        if (inserted == 0) {
+            recentEventIds.put(eventId, Boolean.TRUE);
+            return duplicate(eventId);
+        }
+
+        rememberAfterCommit(eventId);
+        acceptedEvents.increment();
+        return false;
+    }
+
+    private boolean duplicate(String eventId) {
+        LOGGER.info("Dropping duplicate Stripe event {}", eventId);
+        duplicateEvents.increment();
+        return true;
+    }
+
+    private void rememberAfterCommit(String eventId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recentEventIds.put(eventId, Boolean.TRUE);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentEventIds.put(eventId, Boolean.TRUE);
+            }
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package demos.springdata.paymentservice.service;
+
+import java.time.Duration;
+
+public record RetryBackoff(Duration initial, Duration max) {
+
+    public Duration delayFor(int attempts) {
+        Duration delay = initial.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 20));
+        return delay.compareTo(max) > 0 ? max : delay;
+    }
+}
@@ -1,12 +1,14 @@
 package demos.springdata.paymentservice.service;
 
+import com.stripe.StripeClient;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Customer;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.CustomerCreateParams;
 import com.stripe.param.checkout.SessionCreateParams;
-import demos.springdata.paymentservice.model.entity.PaymentTenant;
-import demos.springdata.paymentservice.model.enums.SubscriptionStatus;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
 import demos.springdata.paymentservice.repository.PaymentTenantRepository;
 import demos.springdata.paymentservice.web.dto.CheckoutRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,39 +18,58 @@ import org.springframework.stereotype.Service;
 public class SaasStripeService {
 
     private final PaymentTenantRepository paymentTenantRepository;
+    private final PriceCatalogService priceCatalogService;
+    private final CheckoutSessionRegistry checkoutSessionRegistry;
+    private final StripeClientRegistry stripeClients;
+    private final StripeRateLimiter stripeRateLimiter;
 
     @Autowired
-    public SaasStripeService(PaymentTenantRepository paymentTenantRepository) {
+    public SaasStripeService(PaymentTenantRepository paymentTenantRepository, PriceCatalogService priceCatalogService,
+                             CheckoutSessionRegistry checkoutSessionRegistry, StripeClientRegistry stripeClients,
+                             StripeRateLimiter stripeRateLimiter) {
         this.paymentTenantRepository = paymentTenantRepository;
+        this.priceCatalogService = priceCatalogService;
+        this.checkoutSessionRegistry = checkoutSessionRegistry;
+        this.stripeClients = stripeClients;
+        this.stripeRateLimiter = stripeRateLimiter;
     }
 
 
     public Session createSaasCheckoutSession(CheckoutRequest request) throws StripeException {
+        String requestKey = CheckoutSessionRegistry.requestKey("SAAS_SUBSCRIPTION", request.getTenantId(), request.getPlan(),
+                request.getAbonnementDuration(), request.getAmount(), request.getCurrency());
 
-        PaymentTenant tenant = paymentTenantRepository.findByTenantId(request.getTenantId())
-                .orElseGet(() -> PaymentTenant.builder()
-                        .tenantId(request.getTenantId())
-                        .status(SubscriptionStatus.INACTIVE)
-                        .build());
+        return checkoutSessionRegistry.getOrCreate(requestKey, this::retrieveSaasCheckoutSession, () -> openSaasCheckoutSession(request));
+    }
+
+    private Session retrieveSaasCheckoutSession(String sessionId) throws StripeException {
+        StripeClient stripe = stripeClients.get(StripeTrafficClass.SAAS_CHECKOUT);
+        return stripeRateLimiter.call(null, () -> stripe.checkout().sessions().retrieve(sessionId, RequestOptions.builder().build()));
+    }
 
-        tenant.setBusinessEmail(request.getBusinessEmail());
-        tenant.setName(request.getTenantName());
+    private Session openSaasCheckoutSession(CheckoutRequest request) throws StripeException {
 
-        String customerId = tenant.getStripeCustomerId();
+        StripeClient stripe = stripeClients.get(StripeTrafficClass.SAAS_CHECKOUT);
+
+        String customerId = paymentTenantRepository.upsertContactDetails(UuidV7Generator.next(), request.getTenantId(),
+                request.getTenantName(), request.getBusinessEmail()).orElse(null);
 
         if (customerId == null) {
-            Customer customer = Customer.create(CustomerCreateParams.builder()
+            CustomerCreateParams customerParams = CustomerCreateParams.builder()
                     .setEmail(request.getBusinessEmail())
                     .setName(request.getTenantName())
                     .putMetadata("tenantId", String.valueOf(request.getTenantId()))
-                    .build());
+                    .build();
 
-            customerId = customer.getId();
-            tenant.setStripeCustomerId(customerId);
-        }
+            Customer customer = stripeRateLimiter.call(null,
+                    () -> stripe.customers().create(customerParams, IdempotencyKeyHolder.requestOptions("customer").build()));
 
-        paymentTenantRepository.save(tenant);
+            customerId = paymentTenantRepository.upsertStripeCustomer(UuidV7Generator.next(), request.getTenantId(),
+                    request.getTenantName(), request.getBusinessEmail(), customer.getId());
+        }
 
+        String priceId = priceCatalogService.resolvePriceId(null, request.getPlan(), request.getAbonnementDuration(),
+                request.getCurrency(), request.getAmount());
 
         SessionCreateParams.Builder params = SessionCreateParams.builder()
                 .setCustomer(customerId)
@@ -59,17 +80,7 @@ public class SaasStripeService {
                 .addLineItem(
                         SessionCreateParams.LineItem.builder()
                                 .setQuantity(1L)
-                                .setPriceData(
-                                        SessionCreateParams.LineItem.PriceData.builder()
-                                                .setCurrency(request.getCurrency())
-                                                .setUnitAmount(request.getAmount())
-                                                .setProductData(
-                                                        SessionCreateParams.LineItem.PriceData.ProductData.builder()
-                                                                .setName(request.getPlan() + " - " + request.getAbonnementDuration())
-                                                                .build()
-                                                )
-                                                .build()
-                                )
+                                .setPrice(priceId)
                                 .build()
                 )
                 .putMetadata("type", "SAAS_SUBSCRIPTION")
@@ -77,6 +88,7 @@ public class SaasStripeService {
                 .putMetadata("planName", request.getPlan())
                 .putMetadata("abonnementDuration", request.getAbonnementDuration());
 
-        return Session.create(params.build());
+        return stripeRateLimiter.call(null,
+                () -> stripe.checkout().sessions().create(params.build(), IdempotencyKeyHolder.requestOptions("session").build()));
     }
 }
@@ -0,0 +1,177 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.Stripe;
+import com.stripe.StripeClient;
+import com.stripe.net.Authenticator;
+import com.stripe.net.BearerTokenAuthenticator;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.StripeResponseGetterOptions;
+import demos.springdata.paymentservice.client.PooledStripeHttpClient;
+import demos.springdata.paymentservice.config.StripeProperties;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One {@link StripeClient} per traffic class, each with its own timeouts and retry budget from
+ * {@code stripe.clients.<class>}, so a slow onboarding call can't hold checkout to onboarding's limits.
+ * <p>
+ * Each client has its own HTTP connection pool of {@code max-connections}, published as the
+ * {@code httpcomponents.httpclient.pool.*} metrics with {@code httpclient=stripe-<class>}.
+ */
+@Component
+public class StripeClientRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripeClientRegistry.class);
+
+    private final Map<StripeTrafficClass, StripeClient> clients = new EnumMap<>(StripeTrafficClass.class);
+    private final Map<StripeTrafficClass, PooledStripeHttpClient> transports = new EnumMap<>(StripeTrafficClass.class);
+
+    @Autowired
+    public StripeClientRegistry(StripeProperties properties, MeterRegistry meterRegistry) {
+        for (StripeTrafficClass trafficClass : StripeTrafficClass.values()) {
+            StripeProperties.Client settings = properties.client(trafficClass);
+            String poolName = "stripe-" + trafficClass.name().toLowerCase(Locale.ROOT).replace('_', '-');
+
+            PooledStripeHttpClient transport = pooledTransport(poolName, settings, meterRegistry);
+            transports.put(trafficClass, transport);
+            clients.put(trafficClass, new StripeClient(new LiveStripeResponseGetter(new ClientOptions(properties.getApiKey(), settings), transport)));
+
+            LOGGER.info("Stripe client {}: connect timeout {}, read timeout {}, {} retries, {} connections", trafficClass,
+                    settings.getConnectTimeout(), settings.getReadTimeout(), settings.getMaxNetworkRetries(), settings.getMaxConnections());
+        }
+    }
+
+    public StripeClient get(StripeTrafficClass trafficClass) {
+        return clients.get(trafficClass);
+    }
+
+    @PreDestroy
+    public void close() {
+        transports.forEach((trafficClass, transport) -> {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                LOGGER.warn("Could not close the {} Stripe connection pool", trafficClass, e);
+            }
+        });
+    }
+
+    private static PooledStripeHttpClient pooledTransport(String poolName, StripeProperties.Client settings, MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.getMaxConnections())
+                .setMaxConnPerRoute(settings.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(settings.getConnectTimeout().toMillis()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(settings.getTimeToLive().toMillis()))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(settings.getValidateAfterInactivity().toMillis()))
+                        .build())
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, poolName).bindTo(meterRegistry);
+
+        return new PooledStripeHttpClient(HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleTimeout().toMillis()))
+                .build());
+    }
+
+    /**
+     * What {@code StripeClient.builder()} would produce for these settings; the builder offers no way to pass a
+     * transport, so the response getter is assembled here.
+     */
+    private static final class ClientOptions extends StripeResponseGetterOptions {
+
+        private final Authenticator authenticator;
+        private final int connectTimeout;
+        private final int readTimeout;
+        private final int maxNetworkRetries;
+
+        private ClientOptions(String apiKey, StripeProperties.Client settings) {
+            this.authenticator = apiKey != null ? new BearerTokenAuthenticator(apiKey) : null;
+            this.connectTimeout = Math.toIntExact(settings.getConnectTimeout().toMillis());
+            this.readTimeout = Math.toIntExact(settings.getReadTimeout().toMillis());
+            this.maxNetworkRetries = settings.getMaxNetworkRetries();
+        }
+
+        @Override
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+
+        @Override
+        public String getClientId() {
+            return null;
+        }
+
+        @Override
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        @Override
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        @Override
+        public int getMaxNetworkRetries() {
+            return maxNetworkRetries;
+        }
+
+        @Override
+        public Proxy getConnectionProxy() {
+            return null;
+        }
+
+        @Override
+        public PasswordAuthentication getProxyCredential() {
+            return null;
+        }
+
+        @Override
+        public String getApiBase() {
+            return Stripe.LIVE_API_BASE;
+        }
+
+        @Override
+        public String getFilesBase() {
+            return Stripe.UPLOAD_API_BASE;
+        }
+
+        @Override
+        public String getConnectBase() {
+            return Stripe.CONNECT_API_BASE;
+        }
+
+        @Override
+        public String getMeterEventsBase() {
+            return Stripe.METER_EVENTS_API_BASE;
+        }
+
+        @Override
+        public String getStripeContext() {
+            return null;
+        }
+    }
+}
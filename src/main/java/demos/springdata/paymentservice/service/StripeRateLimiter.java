@@ -0,0 +1,252 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.StripeError;
+import demos.springdata.paymentservice.config.StripeRateLimitProperties;
+import demos.springdata.paymentservice.exception.PaymentException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side budget for Stripe API calls: one bucket for the whole service and one per connected account.
+ * <p>
+ * Buckets are lock-free GCRA limiters. A 429 from Stripe halves the rate of the bucket it was charged to and
+ * pauses it for {@code Retry-After}; every successful call wins back {@code recovery-step} requests per second
+ * until the configured rate is reached again. Callers queue for at most {@code stripe.rate-limit.max-wait} and are
+ * then turned away with a 429 instead of piling more requests onto Stripe.
+ */
+@Component
+public class StripeRateLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripeRateLimiter.class);
+
+    private static final String LOCK_TIMEOUT = "lock_timeout";
+
+    private final StripeRateLimitProperties properties;
+    private final Bucket global;
+    private final Cache<String, Bucket> accounts;
+    private final long maxWaitNanos;
+    private final Counter globalDelayed;
+    private final Counter globalRejected;
+    private final Counter accountDelayed;
+    private final Counter accountRejected;
+    private final Counter globalRateLimited;
+    private final Counter accountRateLimited;
+
+    @Autowired
+    public StripeRateLimiter(StripeRateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.global = new Bucket(properties.getGlobalRate(), properties.getGlobalBurst(), properties.getMinRate());
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxAccounts())
+                .expireAfterAccess(properties.getAccountIdleTtl())
+                .build();
+        this.maxWaitNanos = properties.getMaxWait().toNanos();
+
+        this.globalDelayed = throttleCounter(meterRegistry, "global", "delayed");
+        this.globalRejected = throttleCounter(meterRegistry, "global", "rejected");
+        this.accountDelayed = throttleCounter(meterRegistry, "account", "delayed");
+        this.accountRejected = throttleCounter(meterRegistry, "account", "rejected");
+        this.globalRateLimited = rateLimitedCounter(meterRegistry, "global");
+        this.accountRateLimited = rateLimitedCounter(meterRegistry, "account");
+
+        Gauge.builder("stripe.rate-limiter.rate", global, Bucket::rate)
+                .tag("scope", "global")
+                .description("Requests per second currently allowed towards Stripe")
+                .register(meterRegistry);
+        Gauge.builder("stripe.rate-limiter.slowed-accounts", accounts, cache -> cache.asMap().values().stream().filter(Bucket::isSlowed).count())
+                .description("Connected accounts running below their configured rate after a 429")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} once both the global bucket and the bucket of {@code stripeAccount} (if any) have room.
+     *
+     * @throws PaymentException with {@code 429} when no slot frees up within the queue budget, or when Stripe
+     *                          rate-limits the call itself
+     */
+    public <T> T call(String stripeAccount, StripeCall<T> call) throws StripeException {
+        if (!properties.isEnabled()) {
+            return call.execute();
+        }
+
+        Bucket account = stripeAccount != null ? accounts.get(stripeAccount, id -> newAccountBucket()) : null;
+
+        long deadline = System.nanoTime() + maxWaitNanos;
+        if (account != null) {
+            acquire(account, deadline, accountDelayed, accountRejected);
+        }
+        try {
+            acquire(global, deadline, globalDelayed, globalRejected);
+        } catch (PaymentException e) {
+            if (account != null) {
+                account.release();
+            }
+            throw e;
+        }
+
+        try {
+            T result = call.execute();
+            global.recover(properties.getRecoveryStep());
+            if (account != null) {
+                account.recover(properties.getRecoveryStep());
+            }
+            return result;
+        } catch (RateLimitException e) {
+            if (!LOCK_TIMEOUT.equals(e.getCode())) {
+                Duration retryAfter = retryAfter(e);
+                Bucket charged = account != null ? account : global;
+                charged.slowDown(retryAfter.toNanos());
+                (account != null ? accountRateLimited : globalRateLimited).increment();
+                LOGGER.warn("Stripe rate-limited {}; backing off for {} at {} req/s",
+                        stripeAccount != null ? stripeAccount : "the platform", retryAfter, String.format("%.1f", charged.rate()));
+            }
+            throw new PaymentException("Stripe rate limit reached, retry later", HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
+
+    private void acquire(Bucket bucket, long deadline, Counter delayed, Counter rejected) {
+        long waitNanos = bucket.reserve(deadline - System.nanoTime());
+        if (waitNanos < 0) {
+            rejected.increment();
+            throw new PaymentException("Stripe rate limit reached, retry later", HttpStatus.TOO_MANY_REQUESTS);
+        }
+        if (waitNanos == 0) {
+            return;
+        }
+
+        delayed.increment();
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentException("Interrupted while waiting for the Stripe rate limit", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private Bucket newAccountBucket() {
+        return new Bucket(properties.getAccountRate(), properties.getAccountBurst(), properties.getMinRate());
+    }
+
+    private Duration retryAfter(RateLimitException e) {
+        StripeError error = e.getStripeError();
+        if (error == null || error.getLastResponse() == null || error.getLastResponse().headers() == null) {
+            return properties.getDefaultRetryAfter();
+        }
+        return error.getLastResponse().headers().firstValue("Retry-After")
+                .flatMap(StripeRateLimiter::parseSeconds)
+                .orElse(properties.getDefaultRetryAfter());
+    }
+
+    private static Optional<Duration> parseSeconds(String value) {
+        try {
+            return Optional.of(Duration.ofSeconds(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Counter throttleCounter(MeterRegistry meterRegistry, String scope, String outcome) {
+        return Counter.builder("stripe.rate-limiter.throttled")
+                .tag("scope", scope)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Counter rateLimitedCounter(MeterRegistry meterRegistry, String scope) {
+        return Counter.builder("stripe.rate-limiter.rate-limited")
+                .tag("scope", scope)
+                .description("429 responses returned by Stripe")
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface StripeCall<T> {
+        T execute() throws StripeException;
+    }
+
+    /**
+     * GCRA bucket: {@code nextFree} is the theoretical arrival time of the next request and a caller may go once
+     * it is at most {@code burst} intervals in the future.
+     */
+    static final class Bucket {
+
+        private final long configuredInterval;
+        private final long maxInterval;
+        private final int burst;
+        private final AtomicLong interval;
+        private final AtomicLong nextFree;
+
+        Bucket(double rate, int burst, double minRate) {
+            this.configuredInterval = intervalOf(rate);
+            this.maxInterval = Math.max(configuredInterval, intervalOf(minRate));
+            this.burst = Math.max(1, burst);
+            this.interval = new AtomicLong(configuredInterval);
+            this.nextFree = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * Takes the next slot and returns how long to wait for it, or {@code -1} without taking it when the wait
+         * would exceed {@code maxWaitNanos}.
+         */
+        long reserve(long maxWaitNanos) {
+            while (true) {
+                long now = System.nanoTime();
+                long current = nextFree.get();
+                long step = interval.get();
+                long waitNanos = Math.max(0, current - now - (burst - 1) * step);
+                if (waitNanos > maxWaitNanos) {
+                    return -1;
+                }
+                if (nextFree.compareAndSet(current, Math.max(current, now) + step)) {
+                    return waitNanos;
+                }
+            }
+        }
+
+        /**
+         * Gives back a slot taken by {@link #reserve} for a call that was never made.
+         */
+        void release() {
+            nextFree.addAndGet(-interval.get());
+        }
+
+        void slowDown(long pauseNanos) {
+            long step = interval.updateAndGet(current -> Math.min(maxInterval, current * 2));
+            long resumeAt = System.nanoTime() + pauseNanos + (burst - 1) * step;
+            nextFree.accumulateAndGet(resumeAt, Math::max);
+        }
+
+        void recover(double step) {
+            interval.updateAndGet(current -> current <= configuredInterval
+                    ? current
+                    : Math.max(configuredInterval, intervalOf(TimeUnit.SECONDS.toNanos(1) / (double) current + step)));
+        }
+
+        double rate() {
+            return TimeUnit.SECONDS.toNanos(1) / (double) interval.get();
+        }
+
+        boolean isSlowed() {
+            return interval.get() > configuredInterval;
+        }
+
+        private static long intervalOf(double rate) {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+    }
+}
@@ -1,40 +1,69 @@
 package demos.springdata.paymentservice.service;
 
+import com.stripe.model.Account;
 import com.stripe.model.Event;
 import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.model.StripeObject;
 import com.stripe.model.checkout.Session;
-import demos.springdata.paymentservice.client.MonolithFeignClient;
-import demos.springdata.paymentservice.model.entity.PaymentCustomer;
+import demos.springdata.paymentservice.exception.UnprocessableEventException;
 import demos.springdata.paymentservice.model.entity.PaymentTenant;
+import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
 import demos.springdata.paymentservice.model.enums.SubscriptionStatus;
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
+import demos.springdata.paymentservice.repository.ConnectRepository;
 import demos.springdata.paymentservice.repository.PaymentCustomerRepository;
 import demos.springdata.paymentservice.repository.PaymentTenantRepository;
 import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Handles a Stripe event in phases: the payload is deserialized and routed without a transaction, the local
+ * writes and the outbox row are committed in one short transaction, and the monolith is called afterwards by
+ * {@link MonolithOutboxRelay}, which holds no connection while the request is in flight.
+ */
 @Service
 public class StripeWebhookService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StripeWebhookService.class);
 
-    private final MonolithFeignClient monolithClient;
+    private final MonolithOutboxService monolithOutboxService;
     private final PaymentTenantRepository paymentTenantRepository;
     private final PaymentCustomerRepository paymentCustomerRepository;
+    private final ProcessedEventRegistry processedEventRegistry;
+    private final ConnectRepository connectRepository;
+    private final ConnectAccountCache connectAccountCache;
+    private final AccountLinkCache accountLinkCache;
+    private final CheckoutSessionRegistry checkoutSessionRegistry;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public StripeWebhookService(MonolithFeignClient monolithClient, PaymentTenantRepository paymentTenantRepository, PaymentCustomerRepository paymentCustomerRepository) {
-        this.monolithClient = monolithClient;
+    public StripeWebhookService(MonolithOutboxService monolithOutboxService, PaymentTenantRepository paymentTenantRepository, PaymentCustomerRepository paymentCustomerRepository,
+                                ProcessedEventRegistry processedEventRegistry, ConnectRepository connectRepository, ConnectAccountCache connectAccountCache,
+                                AccountLinkCache accountLinkCache, CheckoutSessionRegistry checkoutSessionRegistry, PlatformTransactionManager transactionManager) {
+        this.monolithOutboxService = monolithOutboxService;
         this.paymentTenantRepository = paymentTenantRepository;
         this.paymentCustomerRepository = paymentCustomerRepository;
+        this.processedEventRegistry = processedEventRegistry;
+        this.connectRepository = connectRepository;
+        this.connectAccountCache = connectAccountCache;
+        this.accountLinkCache = accountLinkCache;
+        this.checkoutSessionRegistry = checkoutSessionRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
     public void handleEvent(Event event) {
+        if (processedEventRegistry.isRecentlyProcessed(event)) {
+            return;
+        }
+
         EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
 
         if (dataObjectDeserializer == null) {
@@ -49,15 +78,34 @@ public class StripeWebhookService {
             return;
         }
 
-        if (event.getType().equals("checkout.session.completed") || event.getType().equals("charge.updated")) {
-            handleCheckoutSessionCompleted((Session) stripeObject);
+        if (event.getType().equals("checkout.session.completed")) {
+            Session session = (Session) stripeObject;
+            checkoutSessionRegistry.evict(session.getId());
+            inTransaction(event, () -> handleCheckoutSessionCompleted(session, event.getAccount()));
+        } else if (event.getType().equals("checkout.session.expired")) {
+            Session session = (Session) stripeObject;
+            checkoutSessionRegistry.evict(session.getId());
+            inTransaction(event, () -> LOGGER.info("Checkout session {} expired", session.getId()));
+        } else if (event.getType().equals("account.updated")) {
+            Account account = (Account) stripeObject;
+            Instant eventCreated = event.getCreated() != null ? Instant.ofEpochSecond(event.getCreated()) : Instant.now();
+            inTransaction(event, () -> handleAccountUpdated(account, eventCreated));
         } else {
-            LOGGER.info("Unhandled event type: {}", event.getType());
+            inTransaction(event, () -> LOGGER.info("Unhandled event type: {}", event.getType()));
         }
     }
 
+    private void inTransaction(Event event, Runnable writes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (processedEventRegistry.isDuplicate(event)) {
+                return;
+            }
+            writes.run();
+        });
+    }
 
-    private void handleCheckoutSessionCompleted(Session session) {
+
+    private void handleCheckoutSessionCompleted(Session session, String stripeAccount) {
 
         String type = session.getMetadata().get("type");
 
@@ -65,7 +113,7 @@ public class StripeWebhookService {
 
             updateLocalTenantSubscription(session);
 
-            monolithClient.activateTenantSubscription(
+            monolithOutboxService.enqueueTenantActivation(
                     session.getMetadata().get("tenantId"),
                     session.getMetadata().get("planName"),
                     session.getMetadata().get("abonnementDuration")
@@ -79,23 +127,48 @@ public class StripeWebhookService {
                 request = new SubscriptionRequest(session.getMetadata().get("subscriptionPlan"), session.getMetadata().get("employment"));
             }
 
-            updateLocalCustomerSubscription(session);
-            monolithClient.activateUserMembership(session.getMetadata().get("userId"), request);
+            updateLocalCustomerSubscription(session, stripeAccount);
+            monolithOutboxService.enqueueMembershipActivation(session.getMetadata().get("userId"), request);
         } else {
             LOGGER.info("Unknown checkout type: {}", type);
         }
     }
 
-    private void updateLocalCustomerSubscription(Session session) {
+    private void handleAccountUpdated(Account account, Instant eventCreated) {
+        StripeConnectAccount connectAccount = connectRepository.findByStripeAccountId(account.getId()).orElse(null);
+
+        if (connectAccount == null) {
+            LOGGER.info("Ignoring account.updated for unknown connected account {}", account.getId());
+            return;
+        }
+
+        if (connectAccount.getStateSyncedAt() != null
+                && connectAccount.getStateSyncedAt().truncatedTo(ChronoUnit.SECONDS).isAfter(eventCreated.truncatedTo(ChronoUnit.SECONDS))) {
+            LOGGER.info("Ignoring stale account.updated for {}", account.getId());
+            return;
+        }
+
+        ConnectAccountState.apply(connectAccount, account, eventCreated);
+        connectRepository.save(connectAccount);
+        connectAccountCache.invalidate(connectAccount);
+
+        if (connectAccount.isDetailsSubmitted()) {
+            accountLinkCache.invalidateAccount(account.getId());
+        }
+
+        LOGGER.info("Synced connected account {}: charges {}, payouts {}, card payments {}", account.getId(),
+                connectAccount.isChargesEnabled(), connectAccount.isPayoutsEnabled(), connectAccount.getCardPaymentsStatus());
+    }
+
+    private void updateLocalCustomerSubscription(Session session, String stripeAccount) {
         String userId = session.getMetadata().get("userId");
 
-        String customerId = session.getCustomer();
-        PaymentCustomer customer = paymentCustomerRepository.findByUserId(userId).orElseGet(() -> PaymentCustomer.builder()
-                .userId(userId)
-                .stripeCustomerId(customerId)
-                .build());
+        if (stripeAccount == null) {
+            LOGGER.warn("Membership checkout {} for user {} arrived without a connected account", session.getId(), userId);
+            return;
+        }
 
-        paymentCustomerRepository.save(customer);
+        paymentCustomerRepository.upsert(UuidV7Generator.next(), userId, session.getCustomer(), stripeAccount);
 
         LOGGER.info("Updated PaymentCustomer {} to ACTIVE status with plan {}", session.getCustomer(), session.getSubscription());
     }
@@ -108,7 +181,7 @@ public class StripeWebhookService {
 
 
         PaymentTenant tenant = paymentTenantRepository.findByTenantId(tenantId)
-                .orElseThrow(() -> new RuntimeException("Tenant not found for ID: " + tenantId));
+                .orElseThrow(() -> new UnprocessableEventException("Tenant not found for ID: " + tenantId));
 
         tenant.setStatus(SubscriptionStatus.ACTIVE);
         tenant.setCurrentPlanName(planName);
@@ -0,0 +1,138 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.config.TenantCacheProperties;
+import demos.springdata.paymentservice.model.entity.PaymentTenant;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts second-level cache entries for tenants changed by any node. A trigger on {@code payment_tenants} sends
+ * {@code <op>:<id>} on the {@value #CHANNEL} channel when a row actually changes, whether through Hibernate or native
+ * SQL; notifications are only delivered on commit. The listener holds its own connection outside the pool, and
+ * clears the whole region whenever it (re)connects, since notifications sent while it was away are lost.
+ */
+@Component
+@ConditionalOnProperty(prefix = "payments.tenant-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TenantCacheInvalidationListener {
+
+    static final String CHANNEL = "payment_tenant_changed";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TenantCacheInvalidationListener.class);
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final Cache cache;
+    private final TenantCacheProperties properties;
+    private final Counter invalidations;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public TenantCacheInvalidationListener(DataSourceProperties dataSourceProperties, EntityManagerFactory entityManagerFactory,
+                                           TenantCacheProperties properties, MeterRegistry meterRegistry) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        this.properties = properties;
+        this.invalidations = Counter.builder("payment-tenants.cache.invalidations").register(meterRegistry);
+        this.thread = new CustomizableThreadFactory("tenant-cache-listener-").newThread(this::listen);
+        this.thread.setDaemon(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        thread.start();
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                evictAll();
+                LOGGER.info("Listening for tenant changes on {}", CHANNEL);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                LOGGER.warn("Tenant change listener lost its connection; retrying in {}", properties.getReconnectDelay(), e);
+                evictAll();
+                sleep();
+            }
+        }
+    }
+
+    void handle(String payload) {
+        int separator = payload.indexOf(':');
+        UUID id;
+        try {
+            id = UUID.fromString(payload.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring malformed tenant change notification '{}'", payload);
+            return;
+        }
+
+        String operation = payload.substring(0, Math.max(separator, 0));
+
+        cache.evictEntityData(PaymentTenant.class, id);
+        if ("DELETE".equals(operation)) {
+            cache.evictNaturalIdData(PaymentTenant.class);
+        }
+        invalidations.increment();
+    }
+
+    private void evictAll() {
+        cache.evictEntityData(PaymentTenant.class);
+        cache.evictNaturalIdData(PaymentTenant.class);
+    }
+
+    private void sleep() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(properties.getReconnectDelay().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        thread.interrupt();
+    }
+}
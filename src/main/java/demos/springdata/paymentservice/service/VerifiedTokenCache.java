@@ -0,0 +1,92 @@
+package demos.springdata.paymentservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import demos.springdata.paymentservice.config.JwtCacheProperties;
+import demos.springdata.paymentservice.model.security.JwtPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps already verified tokens, keyed by their SHA-256 digest, until the token's own expiry
+ * (capped by {@code security.jwt.cache.max-ttl}).
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final Cache<String, JwtPrincipal> cache;
+    private final long maxTtlNanos;
+
+    @Autowired
+    public VerifiedTokenCache(JwtCacheProperties properties, MeterRegistry meterRegistry) {
+        this.maxTtlNanos = properties.getMaxTtl().toNanos();
+
+        if (!properties.isEnabled()) {
+            this.cache = null;
+            return;
+        }
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfter(new Expiry<String, JwtPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String key, JwtPrincipal principal, long currentTime) {
+                        return ttlNanos(principal);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return ttlNanos(principal);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    public JwtPrincipal getIfPresent(String token) {
+        if (cache == null) {
+            return null;
+        }
+        return cache.getIfPresent(digest(token));
+    }
+
+    public void put(String token, JwtPrincipal principal) {
+        if (cache == null || ttlNanos(principal) <= 0) {
+            return;
+        }
+        cache.put(digest(token), principal);
+    }
+
+    private long ttlNanos(JwtPrincipal principal) {
+        if (principal.expiresAt() == null) {
+            return maxTtlNanos;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(principal.expiresAt().toEpochMilli() - System.currentTimeMillis());
+        return Math.max(0, Math.min(remaining, maxTtlNanos));
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
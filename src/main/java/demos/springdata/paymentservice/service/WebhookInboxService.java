@@ -0,0 +1,100 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.model.Event;
+import demos.springdata.paymentservice.config.WebhookInboxProperties;
+import demos.springdata.paymentservice.exception.UnprocessableEventException;
+import demos.springdata.paymentservice.model.entity.WebhookInboxEvent;
+import demos.springdata.paymentservice.model.enums.InboxStatus;
+import demos.springdata.paymentservice.model.id.UuidV7Generator;
+import demos.springdata.paymentservice.repository.WebhookInboxRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class WebhookInboxService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookInboxService.class);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final WebhookInboxRepository inboxRepository;
+    private final WebhookInboxProperties properties;
+    private final RetryBackoff backoff;
+
+    @Autowired
+    public WebhookInboxService(WebhookInboxRepository inboxRepository, WebhookInboxProperties properties) {
+        this.inboxRepository = inboxRepository;
+        this.properties = properties;
+        this.backoff = new RetryBackoff(properties.getInitialBackoff(), properties.getMaxBackoff());
+    }
+
+    public boolean enqueue(Event event, String payload) {
+        int inserted = inboxRepository.insertIfAbsent(UuidV7Generator.next(), event.getId(), event.getType(), payload, Instant.now());
+
+        if (inserted == 0) {
+            LOGGER.info("Event {} is already in the inbox, skipping redelivery", event.getId());
+            return false;
+        }
+        return true;
+    }
+
+    @Transactional
+    public List<WebhookInboxEvent> claimNextBatch(int limit) {
+        Instant now = Instant.now();
+        List<WebhookInboxEvent> batch = inboxRepository.lockNextDue(now, limit);
+
+        for (WebhookInboxEvent inboxEvent : batch) {
+            inboxEvent.setStatus(InboxStatus.PROCESSING);
+            inboxEvent.setAttempts(inboxEvent.getAttempts() + 1);
+            inboxEvent.setLockedUntil(now.plus(properties.getLease()));
+        }
+        return batch;
+    }
+
+    @Transactional
+    public void markProcessed(UUID id) {
+        inboxRepository.findById(id).ifPresent(inboxEvent -> {
+            inboxEvent.setStatus(InboxStatus.PROCESSED);
+            inboxEvent.setProcessedAt(Instant.now());
+            inboxEvent.setLockedUntil(null);
+            inboxEvent.setLastError(null);
+        });
+    }
+
+    @Transactional
+    public void markFailed(UUID id, Exception error) {
+        inboxRepository.findById(id).ifPresent(inboxEvent -> {
+            inboxEvent.setLockedUntil(null);
+            inboxEvent.setLastError(truncate(String.valueOf(error)));
+
+            if (!isRetryable(error)) {
+                inboxEvent.setStatus(InboxStatus.FAILED);
+                LOGGER.error("Giving up on event {}: it cannot be processed", inboxEvent.getEventId());
+                return;
+            }
+
+            if (inboxEvent.getAttempts() >= properties.getMaxAttempts()) {
+                inboxEvent.setStatus(InboxStatus.FAILED);
+                LOGGER.error("Giving up on event {} after {} attempts", inboxEvent.getEventId(), inboxEvent.getAttempts());
+                return;
+            }
+
+            inboxEvent.setStatus(InboxStatus.PENDING);
+            inboxEvent.setNextAttemptAt(Instant.now().plus(backoff.delayFor(inboxEvent.getAttempts())));
+        });
+    }
+
+    private static boolean isRetryable(Exception error) {
+        return !(error instanceof UnprocessableEventException || error instanceof ClassCastException);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,81 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import demos.springdata.paymentservice.config.WebhookInboxProperties;
+import demos.springdata.paymentservice.model.entity.WebhookInboxEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Drains {@code stripe_webhook_inbox} on a fixed pool so that webhook requests only have to persist the event.
+ */
+@Component
+@ConditionalOnProperty(prefix = "stripe.webhook.inbox", name = "enabled", havingValue = "true")
+public class WebhookInboxWorker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookInboxWorker.class);
+
+    private final WebhookInboxService inboxService;
+    private final StripeWebhookService stripeWebhookService;
+    private final WebhookInboxProperties properties;
+    private final ExecutorService executor;
+    private final Semaphore freeWorkers;
+
+    @Autowired
+    public WebhookInboxWorker(WebhookInboxService inboxService, StripeWebhookService stripeWebhookService, WebhookInboxProperties properties) {
+        this.inboxService = inboxService;
+        this.stripeWebhookService = stripeWebhookService;
+        this.properties = properties;
+        this.executor = Executors.newFixedThreadPool(properties.getWorkers(), new CustomizableThreadFactory("webhook-inbox-"));
+        this.freeWorkers = new Semaphore(properties.getWorkers());
+    }
+
+    @Scheduled(fixedDelayString = "${stripe.webhook.inbox.poll-interval:500ms}")
+    public void drain() {
+        int capacity = Math.min(freeWorkers.availablePermits(), properties.getBatchSize());
+        if (capacity == 0) {
+            return;
+        }
+
+        List<WebhookInboxEvent> batch = inboxService.claimNextBatch(capacity);
+
+        for (WebhookInboxEvent inboxEvent : batch) {
+            freeWorkers.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    process(inboxEvent);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    void process(WebhookInboxEvent inboxEvent) {
+        try {
+            Event event = ApiResource.GSON.fromJson(inboxEvent.getPayload(), Event.class);
+            stripeWebhookService.handleEvent(event);
+            inboxService.markProcessed(inboxEvent.getId());
+        } catch (Exception ex) {
+            LOGGER.error("Error while handling inbox event {} (attempt {})", inboxEvent.getEventId(), inboxEvent.getAttempts(), ex);
+            inboxService.markFailed(inboxEvent.getId(), ex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,9 +1,9 @@
 package demos.springdata.paymentservice.web;
 
 import com.stripe.exception.StripeException;
-import com.stripe.model.Account;
 import com.stripe.model.checkout.Session;
 import demos.springdata.paymentservice.service.ConnectStripeService;
+import demos.springdata.paymentservice.service.IdempotencyService;
 import demos.springdata.paymentservice.service.SaasStripeService;
 import demos.springdata.paymentservice.web.dto.AccountLinkResponse;
 import demos.springdata.paymentservice.web.dto.CheckoutRequest;
@@ -13,45 +13,68 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/payments")
 public class PaymentController {
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final SaasStripeService saasService;
     private final ConnectStripeService connectService;
+    private final IdempotencyService idempotencyService;
 
-    public PaymentController(SaasStripeService saasService, ConnectStripeService connectService) {
+    public PaymentController(SaasStripeService saasService, ConnectStripeService connectService, IdempotencyService idempotencyService) {
         this.saasService = saasService;
         this.connectService = connectService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/saas/checkout")
-    public ResponseEntity<String> createSaasCheckoutSession(@RequestBody CheckoutRequest request) throws StripeException {
-        Session session = saasService.createSaasCheckoutSession(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(session.getUrl());
+    public ResponseEntity<String> createSaasCheckoutSession(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody CheckoutRequest request) throws StripeException {
+
+        return idempotencyService.execute("saas-checkout", idempotencyKey, request, String.class, () -> {
+            Session session = saasService.createSaasCheckoutSession(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(session.getUrl());
+        });
     }
 
     @PostMapping("/connect/checkout")
     public ResponseEntity<String> createMemberCheckoutSession(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @RequestParam("connectedAccountId") String connectedAccountId,
             @RequestBody ConnectedCheckoutRequest request) throws StripeException {
 
-        Session session = connectService.createMemberCheckoutSession(connectedAccountId, request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(session.getUrl());
+        return idempotencyService.execute("connect-checkout", idempotencyKey, List.of(connectedAccountId, request), String.class, () -> {
+            Session session = connectService.createMemberCheckoutSession(connectedAccountId, request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(session.getUrl());
+        });
     }
 
     @PostMapping("/connect/onboard")
     public ResponseEntity<AccountLinkResponse> createAccountLink(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @RequestParam("connectedAccountId") String connectedAccountId,
             @RequestParam("returnUrl") String returnUrl,
-            @RequestParam("refreshUrl") String refreshUrl) throws StripeException {
+            @RequestParam("refreshUrl") String refreshUrl,
+            @RequestParam(value = "renew", defaultValue = "false") boolean renew) throws StripeException {
 
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(connectService.createAccountLink(connectedAccountId, returnUrl, refreshUrl));
+        return idempotencyService.execute("connect-onboard", idempotencyKey, List.of(connectedAccountId, returnUrl, refreshUrl, renew),
+                AccountLinkResponse.class,
+                () -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(connectService.createAccountLink(connectedAccountId, returnUrl, refreshUrl, renew)));
     }
 
     @PostMapping("/connect/create-account")
-    public ResponseEntity<String> createConnectedAccount(@RequestBody TenantDto tenant) throws StripeException {
-        Account connectedAccount = connectService.createConnectedAccount(tenant);
-        return ResponseEntity.status(HttpStatus.CREATED).body(connectedAccount.getId());
+    public ResponseEntity<String> createConnectedAccount(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody TenantDto tenant) throws StripeException {
+
+        return idempotencyService.execute("connect-create-account", idempotencyKey, tenant, String.class, () -> {
+            String stripeAccountId = connectService.createConnectedAccount(tenant);
+            return ResponseEntity.status(HttpStatus.CREATED).body(stripeAccountId);
+        });
     }
 }
@@ -8,11 +8,13 @@ import com.stripe.model.checkout.Session;
 import com.stripe.net.Webhook;
 import demos.springdata.paymentservice.client.MonolithFeignClient;
 import demos.springdata.paymentservice.config.StripeProperties;
+import demos.springdata.paymentservice.config.WebhookInboxProperties;
 import demos.springdata.paymentservice.model.entity.PaymentTenant;
 import demos.springdata.paymentservice.model.enums.SubscriptionStatus;
 import demos.springdata.paymentservice.repository.PaymentTenantRepository;
 import demos.springdata.paymentservice.service.SaasStripeService;
 import demos.springdata.paymentservice.service.StripeWebhookService;
+import demos.springdata.paymentservice.service.WebhookInboxService;
 import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,13 +29,18 @@ public class StripeWebhookController {
 
     private final StripeProperties properties;
     private final StripeWebhookService stripeWebhookService;
+    private final WebhookInboxProperties inboxProperties;
+    private final WebhookInboxService webhookInboxService;
     private static final Logger LOGGER = LoggerFactory.getLogger(StripeWebhookController.class);
 
 
     @Autowired
-    public StripeWebhookController(StripeProperties properties, StripeWebhookService stripeWebhookService) {
+    public StripeWebhookController(StripeProperties properties, StripeWebhookService stripeWebhookService,
+                                   WebhookInboxProperties inboxProperties, WebhookInboxService webhookInboxService) {
         this.properties = properties;
         this.stripeWebhookService = stripeWebhookService;
+        this.inboxProperties = inboxProperties;
+        this.webhookInboxService = webhookInboxService;
     }
 
     @PostMapping
@@ -51,6 +58,11 @@ public class StripeWebhookController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid signature");
         }
 
+        if (inboxProperties.isEnabled()) {
+            webhookInboxService.enqueue(event, payload);
+            return ResponseEntity.ok("received");
+        }
+
         try {
             stripeWebhookService.handleEvent(event);
             return ResponseEntity.ok("received");
@@ -0,0 +1,8 @@
+package demos.springdata.paymentservice.web.dto;
+
+public record ActivationResult(
+        String requestId,
+        boolean activated,
+        String error
+) {
+}
@@ -0,0 +1,8 @@
+package demos.springdata.paymentservice.web.dto;
+
+public record MembershipActivationItem(
+        String requestId,
+        String userId,
+        SubscriptionRequest subscription
+) {
+}
@@ -0,0 +1,9 @@
+package demos.springdata.paymentservice.web.dto;
+
+public record TenantActivationItem(
+        String requestId,
+        String tenantId,
+        String planName,
+        String abonnementDuration
+) {
+}
@@ -0,0 +1,8 @@
+package demos.springdata.paymentservice.web.dto;
+
+public record TenantActivationRequest(
+        String tenantId,
+        String planName,
+        String abonnementDuration
+) {
+}
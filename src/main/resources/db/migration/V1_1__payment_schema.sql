@@ -0,0 +1,90 @@
+-- Tables and columns added on top of the baseline. Runs on new databases after V1 and on baselined ones as their
+-- first migration.
+
+ALTER TABLE stripe_connect_accounts
+    ADD COLUMN details_submitted    boolean NOT NULL DEFAULT false,
+    ADD COLUMN card_payments_status varchar(255),
+    ADD COLUMN transfers_status     varchar(255),
+    ADD COLUMN state_synced_at      timestamp(6) with time zone;
+
+ALTER TABLE stripe_connect_accounts
+    ALTER COLUMN details_submitted DROP DEFAULT;
+
+-- Concurrent get-or-create could store a member twice for the same connected account; keep one row per pair so the
+-- upserts have a unique key to target.
+DELETE
+FROM payment_customers duplicate
+    USING payment_customers kept
+WHERE duplicate.user_id = kept.user_id
+  AND duplicate.stripe_connected_account_id = kept.stripe_connected_account_id
+  AND duplicate.ctid > kept.ctid;
+
+ALTER TABLE payment_customers
+    ADD CONSTRAINT uk_payment_customers_user_account UNIQUE (user_id, stripe_connected_account_id);
+
+CREATE TABLE stripe_prices
+(
+    id                uuid                        NOT NULL,
+    lookup_key        varchar(200)                NOT NULL,
+    stripe_account_id varchar(255),
+    stripe_price_id   varchar(255)                NOT NULL,
+    product_name      varchar(255)                NOT NULL,
+    currency          varchar(3)                  NOT NULL,
+    unit_amount       bigint                      NOT NULL,
+    created_at        timestamp(6) with time zone NOT NULL,
+    CONSTRAINT pk_stripe_prices PRIMARY KEY (id),
+    CONSTRAINT uk_stripe_prices_lookup_key UNIQUE (lookup_key)
+);
+
+CREATE TABLE stripe_webhook_inbox
+(
+    id              uuid                        NOT NULL,
+    event_id        varchar(255)                NOT NULL,
+    event_type      varchar(255)                NOT NULL,
+    payload         text                        NOT NULL,
+    status          varchar(32)                 NOT NULL,
+    attempts        integer                     NOT NULL,
+    received_at     timestamp(6) with time zone NOT NULL,
+    next_attempt_at timestamp(6) with time zone NOT NULL,
+    locked_until    timestamp(6) with time zone,
+    processed_at    timestamp(6) with time zone,
+    last_error      varchar(1000),
+    CONSTRAINT pk_stripe_webhook_inbox PRIMARY KEY (id),
+    CONSTRAINT uk_stripe_webhook_inbox_event_id UNIQUE (event_id)
+);
+
+CREATE TABLE stripe_processed_events
+(
+    event_id     varchar(255)                NOT NULL,
+    event_type   varchar(255)                NOT NULL,
+    processed_at timestamp(6) with time zone NOT NULL,
+    CONSTRAINT pk_stripe_processed_events PRIMARY KEY (event_id)
+);
+
+CREATE TABLE monolith_outbox
+(
+    id              uuid                        NOT NULL,
+    aggregate_key   varchar(255)                NOT NULL,
+    type            varchar(32)                 NOT NULL,
+    payload         text                        NOT NULL,
+    status          varchar(32)                 NOT NULL,
+    attempts        integer                     NOT NULL,
+    created_at      timestamp(6) with time zone NOT NULL,
+    next_attempt_at timestamp(6) with time zone NOT NULL,
+    locked_until    timestamp(6) with time zone,
+    delivered_at    timestamp(6) with time zone,
+    last_error      varchar(1000),
+    CONSTRAINT pk_monolith_outbox PRIMARY KEY (id)
+);
+
+CREATE TABLE idempotency_records
+(
+    record_key      varchar(255)                NOT NULL,
+    fingerprint     varchar(64)                 NOT NULL,
+    status          varchar(32)                 NOT NULL,
+    response_status integer,
+    response_body   text,
+    created_at      timestamp(6) with time zone NOT NULL,
+    expires_at      timestamp(6) with time zone NOT NULL,
+    CONSTRAINT pk_idempotency_records PRIMARY KEY (record_key)
+);
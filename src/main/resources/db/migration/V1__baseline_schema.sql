@@ -0,0 +1,38 @@
+-- Schema exactly as Hibernate generated it (ddl-auto=create) from the entities before Flyway took over, with named
+-- constraints. Databases created that way are baselined at this version by spring.flyway.baseline-on-migrate, so this
+-- script only runs on empty databases; everything added since lives in V1_1 and later, which run on both.
+
+CREATE TABLE payment_tenants
+(
+    id                     uuid         NOT NULL,
+    tenant_id              varchar(255) NOT NULL,
+    name                   varchar(255),
+    business_email         varchar(255),
+    stripe_customer_id     varchar(255),
+    stripe_subscription_id varchar(255),
+    current_plan_name      varchar(255),
+    billing_period         varchar(255),
+    status                 varchar(32),
+    CONSTRAINT pk_payment_tenants PRIMARY KEY (id),
+    CONSTRAINT uk_payment_tenants_tenant_id UNIQUE (tenant_id)
+);
+
+CREATE TABLE payment_customers
+(
+    id                          uuid         NOT NULL,
+    user_id                     varchar(255) NOT NULL,
+    stripe_customer_id          varchar(255) NOT NULL,
+    stripe_connected_account_id varchar(255) NOT NULL,
+    CONSTRAINT pk_payment_customers PRIMARY KEY (id)
+);
+
+CREATE TABLE stripe_connect_accounts
+(
+    id                uuid         NOT NULL,
+    tenant_id         varchar(255) NOT NULL,
+    stripe_account_id varchar(255) NOT NULL,
+    charges_enabled   boolean      NOT NULL,
+    payouts_enabled   boolean      NOT NULL,
+    CONSTRAINT pk_stripe_connect_accounts PRIMARY KEY (id),
+    CONSTRAINT uk_stripe_connect_accounts_tenant_id UNIQUE (tenant_id)
+);
@@ -0,0 +1,25 @@
+-- Databases baselined from a Hibernate-generated schema may already have some of these, hence IF NOT EXISTS.
+
+-- payment_customers needs nothing new: uk_payment_customers_user_account (user_id, stripe_connected_account_id)
+-- already serves findByUserIdAndStripeConnectedAccountId and, through its leading column, findByUserId.
+
+-- findByStripeAccountId / existsByStripeAccountId run on every connected checkout and account.updated webhook.
+CREATE INDEX IF NOT EXISTS ix_stripe_connect_accounts_stripe_account_id
+    ON stripe_connect_accounts (stripe_account_id);
+
+-- Most tenants end up ACTIVE; the partial indexes keep lookups of the small non-active sets cheap.
+CREATE INDEX IF NOT EXISTS ix_payment_tenants_status_pending
+    ON payment_tenants (status) WHERE status IN ('PENDING', 'INACTIVE');
+
+CREATE INDEX IF NOT EXISTS ix_payment_tenants_status_cancelled
+    ON payment_tenants (status) WHERE status = 'CANCELLED';
+
+-- Polling queries of the two queues only ever look at unfinished rows.
+CREATE INDEX IF NOT EXISTS ix_stripe_webhook_inbox_due
+    ON stripe_webhook_inbox (received_at) WHERE status IN ('PENDING', 'PROCESSING');
+
+CREATE INDEX IF NOT EXISTS ix_monolith_outbox_due
+    ON monolith_outbox (aggregate_key, created_at) WHERE status IN ('PENDING', 'IN_FLIGHT');
+
+CREATE INDEX IF NOT EXISTS ix_idempotency_records_expires_at
+    ON idempotency_records (expires_at);
@@ -0,0 +1,22 @@
+-- Publishes every committed change to a tenant row as '<op>:<id>' on payment_tenant_changed, so each node can
+-- evict its second-level cache entry (see TenantCacheInvalidationListener). Covers native SQL writes too.
+
+CREATE OR REPLACE FUNCTION notify_payment_tenant_changed() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    PERFORM pg_notify('payment_tenant_changed', TG_OP || ':' || OLD.id);
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER payment_tenants_updated
+    AFTER UPDATE ON payment_tenants
+    FOR EACH ROW
+    WHEN (OLD.* IS DISTINCT FROM NEW.*)
+EXECUTE FUNCTION notify_payment_tenant_changed();
+
+CREATE TRIGGER payment_tenants_deleted
+    AFTER DELETE ON payment_tenants
+    FOR EACH ROW
+EXECUTE FUNCTION notify_payment_tenant_changed();
@@ -0,0 +1,5 @@
+-- Archived prices stay in the catalog as retired instead of being deleted, so the replacement's idempotency key can
+-- name the price it replaces and Stripe does not replay the original create within its 24h idempotency window.
+
+ALTER TABLE stripe_prices
+    ADD COLUMN IF NOT EXISTS retired boolean NOT NULL DEFAULT false;
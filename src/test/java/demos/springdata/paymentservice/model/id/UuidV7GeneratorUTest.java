@@ -0,0 +1,56 @@
+package demos.springdata.paymentservice.model.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UuidV7GeneratorUTest {
+
+    @Test
+    void next_ShouldProduceVersion7RfcVariantIds() {
+        UUID id = UuidV7Generator.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+    }
+
+    @Test
+    void next_ShouldEmbedTheCurrentTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7Generator.next();
+        long after = System.currentTimeMillis();
+
+        long embeddedMillis = id.getMostSignificantBits() >>> 16;
+
+        assertTrue(embeddedMillis >= before);
+        assertTrue(embeddedMillis <= after + 1);
+    }
+
+    @Test
+    void next_ShouldBeStrictlyIncreasing_WithinTheSameMillisecond() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(UuidV7Generator.next());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, "id " + i + " is not greater than its predecessor");
+        }
+    }
+
+    @Test
+    void next_ShouldNotRepeat_AcrossThreads() {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 100_000).parallel().forEach(i -> ids.add(UuidV7Generator.next()));
+
+        assertEquals(100_000, ids.size());
+    }
+}
@@ -0,0 +1,128 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.exception.StripeException;
+import demos.springdata.paymentservice.web.dto.AccountLinkResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountLinkCacheUTest {
+
+    private static final String ACCOUNT = "acct_gym_123";
+    private static final String RETURN_URL = "https://damilsoft.com/return";
+    private static final String REFRESH_URL = "https://damilsoft.com/refresh";
+
+    private AccountLinkCache cache;
+    private AtomicInteger created;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AccountLinkCache(new SimpleMeterRegistry(), 100, Duration.ofSeconds(30));
+        created = new AtomicInteger();
+    }
+
+    @Test
+    void get_ShouldReuseLink_UntilShortlyBeforeExpiry() throws StripeException {
+        AccountLinkResponse first = cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(300));
+        AccountLinkResponse second = cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(300));
+
+        assertSame(first, second);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void get_ShouldNotKeepLink_WhenItExpiresWithinMargin() throws StripeException {
+        cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(10));
+        cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(10));
+
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void get_ShouldKeepLinksApart_ForDifferentUrls() throws StripeException {
+        cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(300));
+        cache.get(ACCOUNT, RETURN_URL + "?lang=bg", REFRESH_URL, () -> link(300));
+
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void invalidateAccount_ShouldDropAllLinksOfTheAccount() throws StripeException {
+        cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(300));
+        cache.get(ACCOUNT, RETURN_URL + "?lang=bg", REFRESH_URL, () -> link(300));
+
+        cache.invalidateAccount(ACCOUNT);
+        cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(300));
+
+        assertEquals(3, created.get());
+    }
+
+    @Test
+    void get_ShouldPropagateStripeException_AndCacheNothing() throws StripeException {
+        StripeException failure = new StripeException("boom", "req_1", "api_error", 500) {
+        };
+
+        StripeException thrown = assertThrows(StripeException.class,
+                () -> cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> {
+                    throw failure;
+                }));
+        assertSame(failure, thrown);
+
+        cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(300));
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void get_ShouldShareOneCreate_WithoutBlockingOtherKeys() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<AccountLinkResponse> first = executor.submit(() -> cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> {
+                creating.countDown();
+                awaitUninterruptibly(release);
+                return link(300);
+            }));
+            assertTrue(creating.await(5, TimeUnit.SECONDS));
+            Future<AccountLinkResponse> second = executor.submit(() -> cache.get(ACCOUNT, RETURN_URL, REFRESH_URL, () -> link(300)));
+
+            cache.get("acct_other", RETURN_URL, REFRESH_URL, () -> link(300));
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(2, created.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AccountLinkResponse link(long secondsToExpiry) {
+        created.incrementAndGet();
+        long now = Instant.now().getEpochSecond();
+        return AccountLinkResponse.builder()
+                .url("https://connect.stripe.com/setup/s/" + created.get())
+                .created(now)
+                .expiresAt(now + secondsToExpiry)
+                .build();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package demos.springdata.paymentservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import demos.springdata.paymentservice.client.AsyncMonolithClient;
+import demos.springdata.paymentservice.exception.MonolithCallException;
+import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncMonolithClientUTest {
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void activateUserMembership_ShouldPostRequestAsJson() {
+        AtomicReference<String> body = new AtomicReference<>();
+        server.createContext("/internal/payments/users/user-1/memberships/activate", exchange -> {
+            body.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+
+        client(10).activateUserMembership("user-1", new SubscriptionRequest("PRO", "MONTHLY")).join();
+
+        assertTrue(body.get().contains("\"subscriptionPlan\":\"PRO\""));
+    }
+
+    @Test
+    void activateTenantSubscription_ShouldFail_WhenMonolithReturnsError() {
+        server.createContext("/internal/payments/tenants/tenant-1/activate", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> client(10).activateTenantSubscription("tenant-1", "PRO", "MONTHLY").join());
+
+        MonolithCallException cause = assertInstanceOf(MonolithCallException.class, failure.getCause());
+        assertEquals(503, cause.getStatus());
+    }
+
+    @Test
+    void activateTenantSubscription_ShouldRejectImmediately_WhenAllConnectionsAreBusy() throws InterruptedException {
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/internal/payments/tenants/tenant-1/activate", exchange -> {
+            received.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+
+        AsyncMonolithClient client = client(1);
+        CompletableFuture<Void> first = client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+
+        CompletionException rejected = assertThrows(CompletionException.class,
+                () -> client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY").join());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+        release.countDown();
+        first.join();
+    }
+
+    private AsyncMonolithClient client(int maxConnections) {
+        return new AsyncMonolithClient(new ObjectMapper(), baseUrl, maxConnections, Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,160 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.checkout.Session;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckoutSessionRegistryUTest {
+
+    private CheckoutSessionRegistry registry;
+    private AtomicInteger created;
+    private String retrievedStatus;
+
+    @BeforeEach
+    void setUp() {
+        registry = new CheckoutSessionRegistry(new SimpleMeterRegistry(), 100, Duration.ofMinutes(30), Duration.ofMinutes(5));
+        created = new AtomicInteger();
+        retrievedStatus = "open";
+    }
+
+    @Test
+    void getOrCreate_ShouldReturnOpenSession_ForIdenticalRequest() throws StripeException {
+        String key = CheckoutSessionRegistry.requestKey("SAAS_SUBSCRIPTION", "tenant-1", "PRO", "MONTHLY", 1000L, "BGN");
+
+        Session first = registry.getOrCreate(key, this::retrieve, () -> session("open", 3600));
+        Session second = registry.getOrCreate(key, this::retrieve, () -> session("open", 3600));
+
+        assertSame(first, second);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void getOrCreate_ShouldCreateNewSession_WhenRequestDiffers() throws StripeException {
+        registry.getOrCreate(CheckoutSessionRegistry.requestKey("SAAS_SUBSCRIPTION", "tenant-1", "PRO", "MONTHLY", 1000L, "BGN"), this::retrieve, () -> session("open", 3600));
+        registry.getOrCreate(CheckoutSessionRegistry.requestKey("SAAS_SUBSCRIPTION", "tenant-1", "PRO", "YEARLY", 10000L, "BGN"), this::retrieve, () -> session("open", 3600));
+
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void getOrCreate_ShouldNotReuse_WhenSessionIsAboutToExpire() throws StripeException {
+        String key = CheckoutSessionRegistry.requestKey("tenant-1");
+
+        registry.getOrCreate(key, this::retrieve, () -> session("open", 60));
+        registry.getOrCreate(key, this::retrieve, () -> session("open", 60));
+
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void evict_ShouldDropSession_WhenWebhookReportsItClosed() throws StripeException {
+        String key = CheckoutSessionRegistry.requestKey("tenant-1");
+
+        Session first = registry.getOrCreate(key, this::retrieve, () -> session("open", 3600));
+        registry.evict(first.getId());
+        Session second = registry.getOrCreate(key, this::retrieve, () -> session("open", 3600));
+
+        assertNotSame(first, second);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void getOrCreate_ShouldNotReuse_WhenStripeReportsSessionCompleted() throws StripeException {
+        String key = CheckoutSessionRegistry.requestKey("tenant-1");
+
+        Session first = registry.getOrCreate(key, this::retrieve, () -> session("open", 3600));
+        retrievedStatus = "complete";
+        Session second = registry.getOrCreate(key, this::retrieve, () -> session("open", 3600));
+
+        assertNotSame(first, second);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void getOrCreate_ShouldNotReuse_WhenSessionCannotBeRetrieved() throws StripeException {
+        String key = CheckoutSessionRegistry.requestKey("tenant-1");
+
+        Session first = registry.getOrCreate(key, this::retrieve, () -> session("open", 3600));
+        Session second = registry.getOrCreate(key, sessionId -> {
+            throw new ApiConnectionException("Stripe unreachable");
+        }, () -> session("open", 3600));
+
+        assertNotSame(first, second);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void getOrCreate_ShouldNotReuse_WhenSessionIsNotOpen() throws StripeException {
+        String key = CheckoutSessionRegistry.requestKey("tenant-1");
+
+        registry.getOrCreate(key, this::retrieve, () -> session("complete", 3600));
+        registry.getOrCreate(key, this::retrieve, () -> session("complete", 3600));
+
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    void getOrCreate_ShouldShareOneCreate_WithoutBlockingOtherKeys() throws Exception {
+        String key = CheckoutSessionRegistry.requestKey("tenant-1");
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Session> first = executor.submit(() -> registry.getOrCreate(key, this::retrieve, () -> {
+                creating.countDown();
+                awaitUninterruptibly(release);
+                return session("open", 3600);
+            }));
+            assertTrue(creating.await(5, TimeUnit.SECONDS));
+            Future<Session> second = executor.submit(() -> registry.getOrCreate(key, this::retrieve, () -> session("open", 3600)));
+
+            registry.getOrCreate(CheckoutSessionRegistry.requestKey("tenant-2"), this::retrieve, () -> session("open", 3600));
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(2, created.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Session retrieve(String sessionId) {
+        Session session = new Session();
+        session.setId(sessionId);
+        session.setStatus(retrievedStatus);
+        return session;
+    }
+
+    private Session session(String status, long secondsToExpiry) {
+        int number = created.incrementAndGet();
+        Session session = new Session();
+        session.setId("cs_test_" + number);
+        session.setUrl("https://checkout.stripe.com/c/pay/cs_test_" + number);
+        session.setStatus(status);
+        session.setExpiresAt(Instant.now().getEpochSecond() + secondsToExpiry);
+        return session;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.config.ConnectAccountCacheProperties;
+import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
+import demos.springdata.paymentservice.repository.ConnectRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConnectAccountCacheUTest {
+
+    @Mock
+    private ConnectRepository connectRepository;
+
+    private ConnectAccountCacheProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ConnectAccountCacheProperties();
+        properties.setEnabled(true);
+    }
+
+    @Test
+    void findByStripeAccountId_ShouldHitDatabaseOnce_WhenLookedUpRepeatedly() {
+        StripeConnectAccount account = account("tenant-1", "acct_1");
+        when(connectRepository.findByStripeAccountId("acct_1")).thenReturn(Optional.of(account));
+
+        ConnectAccountCache cache = new ConnectAccountCache(connectRepository, properties, new SimpleMeterRegistry());
+
+        assertSame(account, cache.findByStripeAccountId("acct_1").orElseThrow());
+        assertSame(account, cache.findByStripeAccountId("acct_1").orElseThrow());
+
+        verify(connectRepository, times(1)).findByStripeAccountId("acct_1");
+    }
+
+    @Test
+    void findByTenantId_ShouldReload_WhenAccountWasInvalidated() {
+        StripeConnectAccount account = account("tenant-1", "acct_1");
+        when(connectRepository.findByTenantId("tenant-1")).thenReturn(Optional.empty(), Optional.of(account));
+
+        ConnectAccountCache cache = new ConnectAccountCache(connectRepository, properties, new SimpleMeterRegistry());
+
+        assertTrue(cache.findByTenantId("tenant-1").isEmpty());
+        cache.invalidate(account);
+        assertSame(account, cache.findByTenantId("tenant-1").orElseThrow());
+    }
+
+    @Test
+    void findStripeAccountIdByTenantId_ShouldReadOnlyTheColumn_UntilTheRowIsCached() {
+        StripeConnectAccount account = account("tenant-1", "acct_1");
+        when(connectRepository.findStripeAccountIdByTenantId("tenant-1")).thenReturn(Optional.of("acct_1"));
+        when(connectRepository.findByTenantId("tenant-1")).thenReturn(Optional.of(account));
+
+        ConnectAccountCache cache = new ConnectAccountCache(connectRepository, properties, new SimpleMeterRegistry());
+
+        assertEquals("acct_1", cache.findStripeAccountIdByTenantId("tenant-1").orElseThrow());
+        verify(connectRepository, never()).findByTenantId(any());
+
+        cache.findByTenantId("tenant-1");
+        assertEquals("acct_1", cache.findStripeAccountIdByTenantId("tenant-1").orElseThrow());
+        verify(connectRepository, times(1)).findStripeAccountIdByTenantId("tenant-1");
+    }
+
+    @Test
+    void reloadByStripeAccountId_ShouldReplaceTheCachedCopy() {
+        StripeConnectAccount stale = account("tenant-1", "acct_1");
+        StripeConnectAccount fresh = account("tenant-1", "acct_1");
+        fresh.setChargesEnabled(true);
+        when(connectRepository.findByStripeAccountId("acct_1")).thenReturn(Optional.of(stale), Optional.of(fresh));
+
+        ConnectAccountCache cache = new ConnectAccountCache(connectRepository, properties, new SimpleMeterRegistry());
+        cache.findByStripeAccountId("acct_1");
+
+        assertSame(fresh, cache.reloadByStripeAccountId("acct_1").orElseThrow());
+        assertSame(fresh, cache.findByStripeAccountId("acct_1").orElseThrow());
+        assertSame(fresh, cache.findByTenantId("tenant-1").orElseThrow());
+        verify(connectRepository, times(2)).findByStripeAccountId("acct_1");
+        verify(connectRepository, never()).findByTenantId(any());
+    }
+
+    @Test
+    void warmUp_ShouldPreloadBothLookups() {
+        StripeConnectAccount account = account("tenant-1", "acct_1");
+        when(connectRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(account)));
+
+        ConnectAccountCache cache = new ConnectAccountCache(connectRepository, properties, new SimpleMeterRegistry());
+        cache.warmUp();
+
+        assertSame(account, cache.findByStripeAccountId("acct_1").orElseThrow());
+        assertSame(account, cache.findByTenantId("tenant-1").orElseThrow());
+        verify(connectRepository, never()).findByStripeAccountId(any());
+        verify(connectRepository, never()).findByTenantId(any());
+    }
+
+    @Test
+    void findByStripeAccountId_ShouldDelegate_WhenCacheIsDisabled() {
+        properties.setEnabled(false);
+        when(connectRepository.findByStripeAccountId("acct_1")).thenReturn(Optional.empty());
+
+        ConnectAccountCache cache = new ConnectAccountCache(connectRepository, properties, new SimpleMeterRegistry());
+        cache.findByStripeAccountId("acct_1");
+        cache.findByStripeAccountId("acct_1");
+
+        verify(connectRepository, times(2)).findByStripeAccountId("acct_1");
+    }
+
+    private static StripeConnectAccount account(String tenantId, String stripeAccountId) {
+        StripeConnectAccount account = new StripeConnectAccount();
+        account.setTenantId(tenantId);
+        account.setStripeAccountId(stripeAccountId);
+        return account;
+    }
+}
@@ -0,0 +1,129 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.StripeClient;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Customer;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.CustomerCreateParams;
+import demos.springdata.paymentservice.config.StripeRateLimitProperties;
+import demos.springdata.paymentservice.model.entity.PaymentCustomer;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
+import demos.springdata.paymentservice.repository.PaymentCustomerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConnectCustomerResolverUTest {
+
+    private static final String USER_ID = "user-1";
+    private static final String ACCOUNT = "acct_gym_123";
+
+    @Mock
+    private PaymentCustomerRepository paymentCustomerRepository;
+
+    @Mock
+    private StripeClientRegistry stripeClients;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private StripeClient stripeClient;
+
+    private ConnectCustomerResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stripeClients.get(StripeTrafficClass.CONNECT_CHECKOUT)).thenReturn(stripeClient);
+        resolver = new ConnectCustomerResolver(paymentCustomerRepository, stripeClients,
+                new StripeRateLimiter(new StripeRateLimitProperties(), new SimpleMeterRegistry()), new SimpleMeterRegistry(), 1000, Duration.ofHours(1));
+    }
+
+    @Test
+    void resolve_ShouldCreateCustomerWithIdempotencyKey_WhenNoneExists() throws StripeException {
+        when(paymentCustomerRepository.findStripeCustomerId(USER_ID, ACCOUNT)).thenReturn(Optional.empty());
+        when(paymentCustomerRepository.insertIfAbsent(any(UUID.class), eq(USER_ID), eq("cus_new"), eq(ACCOUNT))).thenReturn(1);
+
+        Customer customer = mock(Customer.class);
+        when(customer.getId()).thenReturn("cus_new");
+        when(stripeClient.customers().create(any(CustomerCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(customer);
+
+        assertEquals("cus_new", resolver.resolve(USER_ID, "trainee@gym.bg", "Ivan Trainee", ACCOUNT));
+
+        ArgumentCaptor<RequestOptions> options = ArgumentCaptor.forClass(RequestOptions.class);
+        verify(stripeClient.customers()).create(any(CustomerCreateParams.class), options.capture());
+        assertEquals(ACCOUNT, options.getValue().getStripeAccount());
+        assertEquals("customer-" + ACCOUNT + "-" + USER_ID, options.getValue().getIdempotencyKey());
+    }
+
+    @Test
+    void resolve_ShouldUseStoredCustomer_WhenAnotherNodeInsertedFirst() throws StripeException {
+        when(paymentCustomerRepository.findStripeCustomerId(USER_ID, ACCOUNT))
+                .thenReturn(Optional.empty(), Optional.of("cus_winner"));
+        when(paymentCustomerRepository.insertIfAbsent(any(UUID.class), eq(USER_ID), eq("cus_loser"), eq(ACCOUNT))).thenReturn(0);
+
+        Customer customer = mock(Customer.class);
+        when(customer.getId()).thenReturn("cus_loser");
+        when(stripeClient.customers().create(any(CustomerCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(customer);
+
+        assertEquals("cus_winner", resolver.resolve(USER_ID, "trainee@gym.bg", "Ivan Trainee", ACCOUNT));
+    }
+
+    @Test
+    void resolve_ShouldSkipRepository_WhenCustomerWasResolvedBefore() {
+        when(paymentCustomerRepository.findStripeCustomerId(USER_ID, ACCOUNT)).thenReturn(Optional.of("cus_stored"));
+
+        assertEquals("cus_stored", resolver.resolve(USER_ID, "trainee@gym.bg", "Ivan Trainee", ACCOUNT));
+        assertEquals("cus_stored", resolver.resolve(USER_ID, "trainee@gym.bg", "Ivan Trainee", ACCOUNT));
+
+        verify(paymentCustomerRepository, times(1)).findStripeCustomerId(USER_ID, ACCOUNT);
+    }
+
+    @Test
+    void resolve_ShouldShareOneLookup_BetweenConcurrentCallers() throws Exception {
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+
+        when(paymentCustomerRepository.findStripeCustomerId(USER_ID, ACCOUNT)).thenAnswer(invocation -> {
+            lookupStarted.countDown();
+            releaseLookup.await(5, TimeUnit.SECONDS);
+            return Optional.of("cus_stored");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> resolver.resolve(USER_ID, "a@gym.bg", "A", ACCOUNT));
+            assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(() -> resolver.resolve(USER_ID, "a@gym.bg", "A", ACCOUNT));
+
+            Thread.sleep(50);
+            releaseLookup.countDown();
+
+            assertEquals("cus_stored", first.get(5, TimeUnit.SECONDS));
+            assertEquals("cus_stored", second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(paymentCustomerRepository, times(1)).findStripeCustomerId(USER_ID, ACCOUNT);
+    }
+}
@@ -1,30 +1,30 @@
 package demos.springdata.paymentservice.service;
 
+import com.stripe.StripeClient;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Account;
 import com.stripe.model.AccountLink;
-import com.stripe.model.Customer;
 import com.stripe.model.checkout.Session;
 import com.stripe.net.RequestOptions;
 import com.stripe.param.AccountCreateParams;
 import com.stripe.param.AccountLinkCreateParams;
-import com.stripe.param.CustomerCreateParams;
 import com.stripe.param.checkout.SessionCreateParams;
 import demos.springdata.paymentservice.exception.PaymentException;
-import demos.springdata.paymentservice.model.entity.PaymentCustomer;
 import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
 import demos.springdata.paymentservice.repository.ConnectRepository;
-import demos.springdata.paymentservice.repository.PaymentCustomerRepository;
 import demos.springdata.paymentservice.web.dto.AccountLinkResponse;
 import demos.springdata.paymentservice.web.dto.ConnectedCheckoutRequest;
 import demos.springdata.paymentservice.web.dto.TenantDto;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -38,19 +38,38 @@ public class ConnectStripeServiceUTest {
     @Mock
     private ConnectRepository connectRepository;
     @Mock
-    private PaymentCustomerRepository paymentCustomerRepository;
+    private ConnectCustomerResolver connectCustomerResolver;
+    @Mock
+    private ConnectAccountCache connectAccountCache;
+    @Mock
+    private KnownConnectAccounts knownConnectAccounts;
+    @Mock
+    private AccountLinkCache accountLinkCache;
+    @Mock
+    private PriceCatalogService priceCatalogService;
+    @Mock
+    private CheckoutSessionRegistry checkoutSessionRegistry;
+    @Mock
+    private StripeClientRegistry stripeClients;
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private StripeClient stripeClient;
+    @Mock
+    private StripeRateLimiter stripeRateLimiter;
     @Captor
     private ArgumentCaptor<StripeConnectAccount> captor;
 
-    @Captor
-    private ArgumentCaptor<PaymentCustomer> customerCaptor;
-
     @Captor
     private ArgumentCaptor<SessionCreateParams> sessionParamsCaptor;
 
     @InjectMocks
     private ConnectStripeService connectStripeService;
 
+    @BeforeEach
+    void setUp() throws StripeException {
+        lenient().when(stripeRateLimiter.call(any(), any()))
+                .thenAnswer(invocation -> invocation.<StripeRateLimiter.StripeCall<?>>getArgument(1).execute());
+    }
+
 
     @Test
     void createConnectedAccount_ShouldReturnExistingAccount_WhenTenantAlreadyHasOne() throws StripeException {
@@ -61,25 +80,14 @@ public class ConnectStripeServiceUTest {
                 .businessEmail("test@gym.bg")
                 .build();
 
-        StripeConnectAccount existingEntity = new StripeConnectAccount();
-        existingEntity.setStripeAccountId("acct_existing123");
+        Mockito.when(connectAccountCache.findStripeAccountIdByTenantId(tenantId.toString()))
+                .thenReturn(Optional.of("acct_existing123"));
 
+        String result = connectStripeService.createConnectedAccount(tenantDto);
 
-        Mockito.when(connectRepository.findByTenantId(tenantId.toString()))
-                .thenReturn(Optional.of(existingEntity));
-
-        try (MockedStatic<Account> mockedAccountStatic = mockStatic(Account.class)){
-            Account mockStripeAccount = mock(Account.class);
-            Mockito.when(mockStripeAccount.getId()).thenReturn("acct_existing123");
-
-            mockedAccountStatic.when(() -> Account.retrieve("acct_existing123"))
-                    .thenReturn(mockStripeAccount);
-
-            Account result = connectStripeService.createConnectedAccount(tenantDto);
-
-            Assertions.assertEquals("acct_existing123", result.getId());
-            Mockito.verify(connectRepository, never()).save(any());
-        }
+        Assertions.assertEquals("acct_existing123", result);
+        Mockito.verify(connectRepository, never()).save(any());
+        verifyNoInteractions(stripeClients);
     }
 
     @Test
@@ -91,27 +99,31 @@ public class ConnectStripeServiceUTest {
                 .businessEmail("test@gym.bg")
                 .build();
 
-        Mockito.when(connectRepository.findByTenantId(tenantId.toString()))
+        Mockito.when(connectAccountCache.findStripeAccountIdByTenantId(tenantId.toString()))
                 .thenReturn(Optional.empty());
 
 
-        try(MockedStatic<Account> mockedAccountStatic = mockStatic(Account.class)) {
-            Account mockStripeAccount = mock(Account.class);
-            Mockito.when(mockStripeAccount.getId()).thenReturn("acct_newCreated123");
+        Account mockStripeAccount = mock(Account.class);
+        Mockito.when(mockStripeAccount.getId()).thenReturn("acct_newCreated123");
+        Mockito.when(mockStripeAccount.getDetailsSubmitted()).thenReturn(false);
 
-            mockedAccountStatic.when(() -> Account.create(any(AccountCreateParams.class)))
-                    .thenReturn(mockStripeAccount);
+        when(stripeClients.get(StripeTrafficClass.ONBOARDING)).thenReturn(stripeClient);
+        when(stripeClient.accounts().create(any(AccountCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(mockStripeAccount);
 
-            Account result = connectStripeService.createConnectedAccount(tenantDto);
+        String result = connectStripeService.createConnectedAccount(tenantDto);
 
-            assertEquals("acct_newCreated123", result.getId());
+        assertEquals("acct_newCreated123", result);
 
-            verify(connectRepository).save(captor.capture());
+        verify(connectRepository).save(captor.capture());
 
-            StripeConnectAccount savedEntity = captor.getValue();
-            assertEquals(tenantId.toString(), savedEntity.getTenantId());
-            assertEquals("acct_newCreated123", savedEntity.getStripeAccountId());
-        }
+        StripeConnectAccount savedEntity = captor.getValue();
+        assertEquals(tenantId.toString(), savedEntity.getTenantId());
+        assertEquals("acct_newCreated123", savedEntity.getStripeAccountId());
+        assertFalse(savedEntity.isChargesEnabled());
+        assertNotNull(savedEntity.getStateSyncedAt());
+        verify(connectAccountCache).invalidate(savedEntity);
+        verify(knownConnectAccounts).register("acct_newCreated123");
 
     }
 
@@ -122,14 +134,15 @@ public class ConnectStripeServiceUTest {
         String returnUrl = "https://damilsoft.com/return";
         String refreshUrl = "https://damilsoft.com/refresh";
 
-        Mockito.when(connectRepository.findByStripeAccountId(stripeAccountId))
-                .thenReturn(Optional.empty());
+        Mockito.when(knownConnectAccounts.mightExist(stripeAccountId)).thenReturn(false);
 
         PaymentException exception = assertThrows(PaymentException.class, () -> {
             connectStripeService.createAccountLink(stripeAccountId, returnUrl, refreshUrl);
         });
 
         assertEquals("Tenant not connected to Stripe", exception.getMessage());
+        assertEquals(HttpStatus.NOT_FOUND, exception.getErrorCode());
+        verifyNoInteractions(connectAccountCache);
     }
 
     @Test
@@ -141,42 +154,38 @@ public class ConnectStripeServiceUTest {
         StripeConnectAccount existingEntity = new StripeConnectAccount();
         existingEntity.setStripeAccountId("acct_existing123");
 
-        Mockito.when(connectRepository.findByStripeAccountId(stripeAccountId))
+        Mockito.when(knownConnectAccounts.mightExist(stripeAccountId)).thenReturn(true);
+        Mockito.when(connectAccountCache.findByStripeAccountId(stripeAccountId))
                 .thenReturn(Optional.of(existingEntity));
+        Mockito.when(accountLinkCache.get(eq("acct_existing123"), eq(returnUrl), eq(refreshUrl), any()))
+                .thenAnswer(invocation -> invocation.<AccountLinkCache.LinkFactory>getArgument(3).create());
 
 
-        try(MockedStatic<Account> mockedAccountStatic = mockStatic(Account.class);
-            MockedStatic<AccountLink> mockedLinkStatic = mockStatic(AccountLink.class)) {
+        AccountLink mockAccountLink = mock(AccountLink.class);
+        String expectedUrl = "https://connect.stripe.com/setup/s/something";
+        long createdTime = 1000L;
+        long expiresAtTime = 2000L;
 
-            Account mockStripeAccount = mock(Account.class);
-            mockedAccountStatic.when(() -> Account.retrieve(existingEntity.getStripeAccountId()))
-                    .thenReturn(mockStripeAccount);
+        when(mockAccountLink.getUrl()).thenReturn(expectedUrl);
+        when(mockAccountLink.getCreated()).thenReturn(createdTime);
+        when(mockAccountLink.getExpiresAt()).thenReturn(expiresAtTime);
 
-            AccountLink mockAccountLink = mock(AccountLink.class);
-            String expectedUrl = "https://connect.stripe.com/setup/s/something";
-            long createdTime = 1000L;
-            long expiresAtTime = 2000L;
+        when(stripeClients.get(StripeTrafficClass.ONBOARDING)).thenReturn(stripeClient);
+        when(stripeClient.accountLinks().create(any(AccountLinkCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(mockAccountLink);
 
-            when(mockAccountLink.getUrl()).thenReturn(expectedUrl);
-            when(mockAccountLink.getCreated()).thenReturn(createdTime);
-            when(mockAccountLink.getExpiresAt()).thenReturn(expiresAtTime);
+        AccountLinkResponse result = connectStripeService.createAccountLink(stripeAccountId, returnUrl, refreshUrl);
 
-            mockedLinkStatic.when(() -> AccountLink.create(any(AccountLinkCreateParams.class)))
-                    .thenReturn(mockAccountLink);
-
-            AccountLinkResponse result = connectStripeService.createAccountLink(stripeAccountId, returnUrl, refreshUrl);
-
-            assertNotNull(result);
-            assertEquals(expectedUrl, result.getUrl());
-            assertEquals(createdTime, result.getCreated());
-            assertEquals(expiresAtTime, result.getExpiresAt());
-
-        }
+        assertNotNull(result);
+        assertEquals(expectedUrl, result.getUrl());
+        assertEquals(createdTime, result.getCreated());
+        assertEquals(expiresAtTime, result.getExpiresAt());
+        verify(stripeClient, never()).accounts();
     }
 
 
     @Test
-    void createMemberCheckoutSession_ShouldCreateCustomerAndSession_WhenCustomerDoesNotExist() throws StripeException {
+    void createMemberCheckoutSession_ShouldCreateSession_ForResolvedCustomer() throws StripeException {
 
         String stripeAccountId = "acct_gym_123";
         UUID userId = UUID.randomUUID();
@@ -195,50 +204,95 @@ public class ConnectStripeServiceUTest {
         StripeConnectAccount connectAccount = new StripeConnectAccount();
         connectAccount.setStripeAccountId(stripeAccountId);
 
-        when(connectRepository.findByStripeAccountId(stripeAccountId))
+        when(knownConnectAccounts.mightExist(stripeAccountId)).thenReturn(true);
+        when(connectAccountCache.findByStripeAccountId(stripeAccountId))
                 .thenReturn(Optional.of(connectAccount));
 
-        when(paymentCustomerRepository.findByUserIdAndStripeConnectedAccountId(eq(userId.toString()), eq(stripeAccountId)))
-                .thenReturn(Optional.empty());
+        when(connectCustomerResolver.resolve(userId.toString(), userEmail, "Ivan Trainee", stripeAccountId))
+                .thenReturn("cus_newly_created_123");
+        when(priceCatalogService.resolvePriceId(stripeAccountId, "PRO", "MONTHLY", "BGN", 5000L))
+                .thenReturn("price_gym_pro_monthly");
+        when(checkoutSessionRegistry.getOrCreate(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<CheckoutSessionRegistry.SessionFactory>getArgument(2).create());
+
+        Session mockSession = mock(Session.class);
+        when(mockSession.getId()).thenReturn("cs_test_session_xyz");
 
-        try (MockedStatic<Session> sessionStatic = mockStatic(Session.class);
-             MockedStatic<Customer> customerStatic = mockStatic(Customer.class)) {
+        when(stripeClients.get(StripeTrafficClass.CONNECT_CHECKOUT)).thenReturn(stripeClient);
+        when(stripeClient.checkout().sessions().create(any(SessionCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(mockSession);
 
-            Customer mockCustomer = mock(Customer.class);
-            when(mockCustomer.getId()).thenReturn("cus_newly_created_123");
+        Session result = connectStripeService.createMemberCheckoutSession(stripeAccountId, request);
 
-            customerStatic.when(() -> Customer.create(any(CustomerCreateParams.class), any(RequestOptions.class)))
-                    .thenReturn(mockCustomer);
+        assertNotNull(result);
+        assertEquals("cs_test_session_xyz", result.getId());
 
-            Session mockSession = mock(Session.class);
-            when(mockSession.getId()).thenReturn("cs_test_session_xyz");
+        verify(stripeClient.checkout().sessions()).create(sessionParamsCaptor.capture(), any(RequestOptions.class));
+        SessionCreateParams capturedParams = sessionParamsCaptor.getValue();
 
-            sessionStatic.when(() -> Session.create(any(SessionCreateParams.class), any(RequestOptions.class)))
-                    .thenReturn(mockSession);
+        assertEquals("cus_newly_created_123", capturedParams.getCustomer());
 
-            Session result = connectStripeService.createMemberCheckoutSession(stripeAccountId, request);
 
-            assertNotNull(result);
-            assertEquals("cs_test_session_xyz", result.getId());
+        assertEquals("GYM_MEMBERSHIP", capturedParams.getMetadata().get("type"));
+        assertEquals(userId.toString(), capturedParams.getMetadata().get("userId"));
 
-            verify(paymentCustomerRepository).save(customerCaptor.capture());
-            PaymentCustomer savedCustomer = customerCaptor.getValue();
-            assertEquals(userId.toString(), savedCustomer.getUserId());
-            assertEquals("cus_newly_created_123", savedCustomer.getStripeCustomerId());
-            assertEquals(stripeAccountId, savedCustomer.getStripeConnectedAccountId());
 
-            sessionStatic.verify(() -> Session.create(sessionParamsCaptor.capture(), any(RequestOptions.class)));
-            SessionCreateParams capturedParams = sessionParamsCaptor.getValue();
+        assertEquals(1L, capturedParams.getLineItems().get(0).getQuantity());
+        assertEquals("price_gym_pro_monthly", capturedParams.getLineItems().get(0).getPrice());
+    }
 
-            assertEquals("cus_newly_created_123", capturedParams.getCustomer());
+    @Test
+    void createMemberCheckoutSession_ShouldReturnNotFound_WhenAccountIsUnknown() {
+        when(knownConnectAccounts.mightExist("acct_bogus")).thenReturn(false);
 
+        PaymentException exception = assertThrows(PaymentException.class,
+                () -> connectStripeService.createMemberCheckoutSession("acct_bogus", new ConnectedCheckoutRequest()));
 
-            assertEquals("GYM_MEMBERSHIP", capturedParams.getMetadata().get("type"));
-            assertEquals(userId.toString(), capturedParams.getMetadata().get("userId"));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getErrorCode());
+        verifyNoInteractions(connectAccountCache, connectCustomerResolver);
+    }
+
+    @Test
+    void createMemberCheckoutSession_ShouldRejectCheckout_WhenSyncedAccountCannotCharge() {
+        StripeConnectAccount connectAccount = new StripeConnectAccount();
+        connectAccount.setStripeAccountId("acct_incomplete");
+        connectAccount.setChargesEnabled(false);
+        connectAccount.setCardPaymentsStatus("inactive");
+        connectAccount.setStateSyncedAt(Instant.now());
+
+        when(knownConnectAccounts.mightExist("acct_incomplete")).thenReturn(true);
+        when(connectAccountCache.findByStripeAccountId("acct_incomplete")).thenReturn(Optional.of(connectAccount));
+        when(connectAccountCache.reloadByStripeAccountId("acct_incomplete")).thenReturn(Optional.of(connectAccount));
+
+        PaymentException exception = assertThrows(PaymentException.class,
+                () -> connectStripeService.createMemberCheckoutSession("acct_incomplete", new ConnectedCheckoutRequest()));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getErrorCode());
+        verifyNoInteractions(stripeClients, connectCustomerResolver);
+    }
+
+    @Test
+    void createMemberCheckoutSession_ShouldRecheckDatabase_WhenCachedAccountCannotCharge() throws StripeException {
+        StripeConnectAccount cached = new StripeConnectAccount();
+        cached.setStripeAccountId("acct_onboarded");
+        cached.setChargesEnabled(false);
+        cached.setStateSyncedAt(Instant.now());
+
+        StripeConnectAccount current = new StripeConnectAccount();
+        current.setStripeAccountId("acct_onboarded");
+        current.setChargesEnabled(true);
+        current.setCardPaymentsStatus("active");
+        current.setStateSyncedAt(Instant.now());
+
+        ConnectedCheckoutRequest request = new ConnectedCheckoutRequest();
+        request.setUserId(UUID.randomUUID());
+        Session session = new Session();
 
+        when(knownConnectAccounts.mightExist("acct_onboarded")).thenReturn(true);
+        when(connectAccountCache.findByStripeAccountId("acct_onboarded")).thenReturn(Optional.of(cached));
+        when(connectAccountCache.reloadByStripeAccountId("acct_onboarded")).thenReturn(Optional.of(current));
+        when(checkoutSessionRegistry.getOrCreate(any(), any(), any())).thenReturn(session);
 
-            assertEquals(1L, capturedParams.getLineItems().get(0).getQuantity());
-            assertEquals(5000L, capturedParams.getLineItems().get(0).getPriceData().getUnitAmount());
-        }
+        assertSame(session, connectStripeService.createMemberCheckoutSession("acct_onboarded", request));
     }
 }
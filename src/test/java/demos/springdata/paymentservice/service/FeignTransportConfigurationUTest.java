@@ -0,0 +1,67 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.client.PooledFeignClient;
+import demos.springdata.paymentservice.config.FeignTransportConfiguration;
+import demos.springdata.paymentservice.config.FeignTransportProperties;
+import feign.Client;
+import feign.Request;
+import feign.http2client.Http2Client;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FeignTransportConfigurationUTest {
+
+    private static final String CLIENT = "monolith";
+
+    private FeignTransportConfiguration configuration;
+    private FeignTransportProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private MockEnvironment environment;
+
+    @BeforeEach
+    void setUp() {
+        configuration = new FeignTransportConfiguration();
+        properties = new FeignTransportProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        environment = new MockEnvironment().withProperty("spring.cloud.openfeign.client.name", CLIENT);
+    }
+
+    @Test
+    void feignClient_ShouldUsePooledTransport_WhenClientHasNoEntry() {
+        Client client = configuration.feignClient(environment, properties, meterRegistry);
+
+        assertInstanceOf(PooledFeignClient.class, client);
+        assertEquals(100, meterRegistry.get("httpcomponents.httpclient.pool.total.max").tag("httpclient", CLIENT).gauge().value());
+        configuration.close();
+    }
+
+    @Test
+    void feignClient_ShouldUseConfiguredTransport() {
+        assertInstanceOf(Client.Default.class, configuration.feignClient(environment, withType(FeignTransportProperties.Type.DEFAULT), meterRegistry));
+        assertInstanceOf(Http2Client.class, configuration.feignClient(environment, withType(FeignTransportProperties.Type.HTTP2), meterRegistry));
+    }
+
+    @Test
+    void close_ShouldShutDownThePool() {
+        Client client = configuration.feignClient(environment, properties, meterRegistry);
+
+        configuration.close();
+
+        Request request = Request.create(Request.HttpMethod.GET, "http://localhost:1/", Map.of(), null, StandardCharsets.UTF_8, null);
+        assertThrows(IllegalStateException.class, () -> client.execute(request, new Request.Options()));
+    }
+
+    private FeignTransportProperties withType(FeignTransportProperties.Type type) {
+        FeignTransportProperties.Transport transport = new FeignTransportProperties.Transport();
+        transport.setType(type);
+        properties.getClients().put(CLIENT, transport);
+        return properties;
+    }
+}
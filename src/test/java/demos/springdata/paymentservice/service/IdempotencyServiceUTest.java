@@ -0,0 +1,217 @@
+package demos.springdata.paymentservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import demos.springdata.paymentservice.config.IdempotencyProperties;
+import demos.springdata.paymentservice.exception.PaymentException;
+import demos.springdata.paymentservice.model.entity.IdempotencyRecord;
+import demos.springdata.paymentservice.model.enums.IdempotencyStatus;
+import demos.springdata.paymentservice.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyServiceUTest {
+
+    private static final String RECORD_KEY = recordKeyOf("anonymous", "key-1");
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    private IdempotencyService idempotencyService;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(repository, new IdempotencyProperties(), new ObjectMapper(), new SimpleMeterRegistry());
+        executions = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void execute_ShouldRunAction_WhenNoKeyIsGiven() throws Exception {
+        ResponseEntity<String> response = idempotencyService.execute("saas-checkout", null, Map.of("plan", "PRO"), String.class, this::checkoutUrl);
+
+        assertEquals("https://checkout.stripe.com/1", response.getBody());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void execute_ShouldReplayStoredResponse_WhenKeyIsRepeated() throws Exception {
+        when(repository.claim(eq(RECORD_KEY), anyString(), any(Instant.class), any(Instant.class))).thenReturn(1);
+
+        ResponseEntity<String> first = idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, this::checkoutUrl);
+        ResponseEntity<String> second = idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, this::checkoutUrl);
+
+        assertEquals(1, executions.get());
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals(HttpStatus.CREATED, second.getStatusCode());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(repository).complete(RECORD_KEY, 201, "\"https://checkout.stripe.com/1\"");
+    }
+
+    @Test
+    void execute_ShouldReject_WhenKeyIsReusedForDifferentRequest() throws Exception {
+        when(repository.claim(eq(RECORD_KEY), anyString(), any(Instant.class), any(Instant.class))).thenReturn(1);
+
+        idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, this::checkoutUrl);
+
+        PaymentException exception = assertThrows(PaymentException.class,
+                () -> idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "BASIC"), String.class, this::checkoutUrl));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getErrorCode());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldReplayResponseStoredByAnotherNode() throws Exception {
+        when(repository.claim(eq(RECORD_KEY), anyString(), any(Instant.class), any(Instant.class))).thenReturn(0);
+
+        IdempotencyRecord stored = IdempotencyRecord.builder()
+                .recordKey(RECORD_KEY)
+                .fingerprint(fingerprintOf(Map.of("plan", "PRO")))
+                .status(IdempotencyStatus.COMPLETED)
+                .responseStatus(201)
+                .responseBody("\"https://checkout.stripe.com/stored\"")
+                .createdAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build();
+        when(repository.findById(RECORD_KEY)).thenReturn(Optional.of(stored));
+
+        ResponseEntity<String> response = idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, this::checkoutUrl);
+
+        assertEquals("https://checkout.stripe.com/stored", response.getBody());
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void execute_ShouldReturnConflict_WhileAnotherNodeIsProcessing() throws Exception {
+        when(repository.claim(eq(RECORD_KEY), anyString(), any(Instant.class), any(Instant.class))).thenReturn(0);
+        when(repository.findById(RECORD_KEY)).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .recordKey(RECORD_KEY)
+                .fingerprint(fingerprintOf(Map.of("plan", "PRO")))
+                .status(IdempotencyStatus.IN_PROGRESS)
+                .createdAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build()));
+
+        PaymentException exception = assertThrows(PaymentException.class,
+                () -> idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, this::checkoutUrl));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getErrorCode());
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void execute_ShouldReleaseClaim_WhenActionFails() {
+        when(repository.claim(eq(RECORD_KEY), anyString(), any(Instant.class), any(Instant.class))).thenReturn(1);
+
+        assertThrows(PaymentException.class, () -> idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class,
+                () -> {
+                    throw new PaymentException("Stripe Account Incomplete", HttpStatus.BAD_REQUEST);
+                }));
+
+        verify(repository).release(RECORD_KEY);
+        verify(repository, never()).complete(anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    void execute_ShouldExposeKeyForStripeCalls_OnlyWhileActionRuns() throws Exception {
+        when(repository.claim(eq(RECORD_KEY), anyString(), any(Instant.class), any(Instant.class))).thenReturn(1);
+
+        idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, () -> {
+            assertEquals(RECORD_KEY, IdempotencyKeyHolder.current());
+            return checkoutUrl();
+        });
+
+        assertNull(IdempotencyKeyHolder.current());
+    }
+
+    @Test
+    void execute_ShouldKeepCallersApart_WhenTheySendTheSameKey() throws Exception {
+        when(repository.claim(anyString(), anyString(), any(Instant.class), any(Instant.class))).thenReturn(1);
+
+        authenticateAs("user-1");
+        idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, this::checkoutUrl);
+        authenticateAs("user-2");
+        ResponseEntity<String> second = idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "BASIC"), String.class, this::checkoutUrl);
+
+        assertEquals(2, executions.get());
+        assertNull(second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(repository).claim(eq(recordKeyOf("user-1", "key-1")), anyString(), any(Instant.class), any(Instant.class));
+        verify(repository).claim(eq(recordKeyOf("user-2", "key-1")), anyString(), any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    void execute_ShouldRunAgain_WhenStoredRecordHasExpired() throws Exception {
+        when(repository.claim(eq(RECORD_KEY), anyString(), any(Instant.class), any(Instant.class))).thenReturn(0, 1);
+        when(repository.findById(RECORD_KEY)).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .recordKey(RECORD_KEY)
+                .fingerprint(fingerprintOf(Map.of("plan", "PRO")))
+                .status(IdempotencyStatus.COMPLETED)
+                .responseStatus(201)
+                .responseBody("\"https://checkout.stripe.com/stored\"")
+                .createdAt(Instant.now().minusSeconds(90_000))
+                .expiresAt(Instant.now().minusSeconds(3600))
+                .build()));
+
+        ResponseEntity<String> response = idempotencyService.execute("saas-checkout", "key-1", Map.of("plan", "PRO"), String.class, this::checkoutUrl);
+
+        assertEquals("https://checkout.stripe.com/1", response.getBody());
+        verify(repository).deleteIfExpired(eq(RECORD_KEY), any(Instant.class));
+    }
+
+    private static void authenticateAs(String subject) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(subject, null, List.of()));
+    }
+
+    private ResponseEntity<String> checkoutUrl() {
+        return ResponseEntity.status(HttpStatus.CREATED).body("https://checkout.stripe.com/" + executions.incrementAndGet());
+    }
+
+    private static String recordKeyOf(String caller, String idempotencyKey) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return "saas-checkout:" + HexFormat.of().formatHex(sha256.digest((caller + "\n" + idempotencyKey).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String fingerprintOf(Object request) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update("saas-checkout".getBytes(StandardCharsets.UTF_8));
+        sha256.update((byte) '\n');
+        sha256.update(new ObjectMapper().writeValueAsString(request).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+}
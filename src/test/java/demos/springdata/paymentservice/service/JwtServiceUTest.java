@@ -1,5 +1,6 @@
 package demos.springdata.paymentservice.service;
 
+import demos.springdata.paymentservice.model.security.JwtPrincipal;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -11,10 +12,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -30,6 +33,7 @@ public class JwtServiceUTest {
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(jwtService, "secretKey", TEST_SECRET_KEY);
+        jwtService.init();
     }
 
     @Test
@@ -72,6 +76,38 @@ public class JwtServiceUTest {
         });
     }
 
+    @Test
+    void verify_ShouldReturnPrincipalWithRolesAndExpiry_WhenTokenIsValid() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("roles", List.of("ROLE_ADMIN", "ROLE_STAFF"));
+        String token = createToken(claims, "admin@gym.bg");
+
+        JwtPrincipal principal = jwtService.verify(token);
+
+        Assertions.assertEquals("admin@gym.bg", principal.subject());
+        Assertions.assertEquals(List.of(new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_STAFF")),
+                principal.authorities());
+        Assertions.assertNotNull(principal.expiresAt());
+    }
+
+    @Test
+    void verify_ShouldReuseAuthorityInstances_AcrossTokens() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("roles", List.of("ROLE_ADMIN"));
+
+        JwtPrincipal first = jwtService.verify(createToken(claims, "first@gym.bg"));
+        JwtPrincipal second = jwtService.verify(createToken(claims, "second@gym.bg"));
+
+        Assertions.assertSame(first.authorities().get(0), second.authorities().get(0));
+    }
+
+    @Test
+    void verify_ShouldReturnNoAuthorities_WhenRolesClaimIsMissing() {
+        JwtPrincipal principal = jwtService.verify(generateTestToken("user@gym.bg"));
+
+        Assertions.assertTrue(principal.authorities().isEmpty());
+    }
+
     private String generateTestToken(String username) {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, username);
@@ -0,0 +1,79 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.config.ConnectAccountCacheProperties;
+import demos.springdata.paymentservice.repository.ConnectRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class KnownConnectAccountsUTest {
+
+    @Mock
+    private ConnectRepository connectRepository;
+
+    private KnownConnectAccounts knownConnectAccounts;
+
+    @BeforeEach
+    void setUp() {
+        knownConnectAccounts = new KnownConnectAccounts(connectRepository, new ConnectAccountCacheProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void mightExist_ShouldRejectMalformedIds_WithoutQuery() {
+        assertFalse(knownConnectAccounts.mightExist(null));
+        assertFalse(knownConnectAccounts.mightExist("../../etc/passwd"));
+        assertFalse(knownConnectAccounts.mightExist("cus_123"));
+
+        verifyNoInteractions(connectRepository);
+    }
+
+    @Test
+    void mightExist_ShouldAnswerFromMemory_AfterRebuild() {
+        when(connectRepository.findAllStripeAccountIds()).thenReturn(List.of("acct_1"));
+
+        knownConnectAccounts.rebuild();
+
+        assertTrue(knownConnectAccounts.mightExist("acct_1"));
+        verify(connectRepository, never()).existsByStripeAccountId(any());
+    }
+
+    @Test
+    void mightExist_ShouldQueryUnknownIdOnlyOnce() {
+        when(connectRepository.existsByStripeAccountId("acct_bogus")).thenReturn(false);
+
+        assertFalse(knownConnectAccounts.mightExist("acct_bogus"));
+        assertFalse(knownConnectAccounts.mightExist("acct_bogus"));
+
+        verify(connectRepository, times(1)).existsByStripeAccountId("acct_bogus");
+    }
+
+    @Test
+    void register_ShouldClearNegativeEntry_WhenAccountIsCreated() {
+        when(connectRepository.existsByStripeAccountId("acct_new")).thenReturn(false);
+
+        assertFalse(knownConnectAccounts.mightExist("acct_new"));
+        knownConnectAccounts.register("acct_new");
+
+        assertTrue(knownConnectAccounts.mightExist("acct_new"));
+    }
+
+    @Test
+    void mightExist_ShouldLearnAccountsCreatedElsewhere() {
+        when(connectRepository.existsByStripeAccountId("acct_other")).thenReturn(true);
+
+        assertTrue(knownConnectAccounts.mightExist("acct_other"));
+        assertTrue(knownConnectAccounts.mightExist("acct_other"));
+
+        verify(connectRepository, times(1)).existsByStripeAccountId("acct_other");
+    }
+}
@@ -0,0 +1,212 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.client.ResilientMonolithClient;
+import demos.springdata.paymentservice.config.MonolithOutboxProperties;
+import demos.springdata.paymentservice.model.entity.MonolithOutboxMessage;
+import demos.springdata.paymentservice.model.enums.ActivationType;
+import demos.springdata.paymentservice.model.enums.OutboxStatus;
+import demos.springdata.paymentservice.web.dto.ActivationResult;
+import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import demos.springdata.paymentservice.web.dto.TenantActivationRequest;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MonolithOutboxRelayUTest {
+
+    @Mock
+    private MonolithOutboxService outboxService;
+    @Mock
+    private ResilientMonolithClient monolithClient;
+
+    private MonolithOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(monolithClient.getMaxConcurrentCalls()).thenReturn(10);
+        relay = new MonolithOutboxRelay(outboxService, monolithClient, new MonolithOutboxProperties());
+    }
+
+    @Test
+    void relay_ShouldDeliverTenantActivation_AndMarkDelivered() {
+        MonolithOutboxMessage message = message(ActivationType.TENANT_SUBSCRIPTION, "tenant-1");
+        when(outboxService.claimNextBatch(50)).thenReturn(List.of(message));
+        when(outboxService.readPayload(message, TenantActivationRequest.class))
+                .thenReturn(new TenantActivationRequest("tenant-1", "PRO", "MONTHLY"));
+        when(monolithClient.activateTenantSubscription("tenant-1", "PRO", "MONTHLY")).thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        verify(monolithClient).activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+        verify(outboxService).markDelivered(message.getId());
+        verify(outboxService, never()).markFailed(any(UUID.class), any(Exception.class));
+    }
+
+    @Test
+    void relay_ShouldMarkFailed_WhenMonolithCallThrows() {
+        MonolithOutboxMessage message = message(ActivationType.USER_MEMBERSHIP, "user-1");
+        SubscriptionRequest request = new SubscriptionRequest("PRO", "MONTHLY");
+        RuntimeException failure = new RuntimeException("monolith unavailable");
+
+        when(outboxService.claimNextBatch(50)).thenReturn(List.of(message));
+        when(outboxService.readPayload(message, SubscriptionRequest.class)).thenReturn(request);
+        when(monolithClient.activateUserMembership("user-1", request)).thenReturn(CompletableFuture.failedFuture(failure));
+
+        relay.relay();
+
+        verify(outboxService).markFailed(message.getId(), failure);
+        verify(outboxService, never()).markDelivered(any());
+    }
+
+    @Test
+    void relay_ShouldDeferWithoutSpendingAttempt_WhenCircuitIsOpen() {
+        MonolithOutboxMessage message = message(ActivationType.USER_MEMBERSHIP, "user-1");
+        SubscriptionRequest request = new SubscriptionRequest("PRO", "MONTHLY");
+        MonolithOutboxProperties properties = new MonolithOutboxProperties();
+
+        when(outboxService.claimNextBatch(50)).thenReturn(List.of(message));
+        when(outboxService.readPayload(message, SubscriptionRequest.class)).thenReturn(request);
+        when(monolithClient.activateUserMembership("user-1", request)).thenReturn(CompletableFuture.failedFuture(
+                CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("monolith-membership-activation"))));
+
+        relay.relay();
+
+        verify(outboxService).defer(eq(List.of(message.getId())), eq(properties.getDeferDelay()), anyString());
+        verify(outboxService, never()).markFailed(any(UUID.class), any(Exception.class));
+        verify(outboxService, never()).markDelivered(any());
+    }
+
+    @Test
+    void relay_ShouldDeferWithoutSpendingAttempt_WhenAsyncClientIsSaturated() {
+        MonolithOutboxMessage message = message(ActivationType.USER_MEMBERSHIP, "user-1");
+        SubscriptionRequest request = new SubscriptionRequest("PRO", "MONTHLY");
+
+        when(outboxService.claimNextBatch(50)).thenReturn(List.of(message));
+        when(outboxService.readPayload(message, SubscriptionRequest.class)).thenReturn(request);
+        when(monolithClient.activateUserMembership("user-1", request)).thenReturn(CompletableFuture.failedFuture(
+                new RejectedExecutionException("Too many concurrent monolith calls")));
+
+        relay.relay();
+
+        verify(outboxService).defer(eq(List.of(message.getId())), any(), anyString());
+        verify(outboxService, never()).markFailed(any(UUID.class), any(Exception.class));
+    }
+
+    @Test
+    void relay_ShouldKeepSingleActivationsWithinTheBulkheadLimit() {
+        List<MonolithOutboxMessage> messages = List.of(
+                message(ActivationType.TENANT_SUBSCRIPTION, "tenant-1"),
+                message(ActivationType.TENANT_SUBSCRIPTION, "tenant-2"),
+                message(ActivationType.TENANT_SUBSCRIPTION, "tenant-3"),
+                message(ActivationType.TENANT_SUBSCRIPTION, "tenant-4"),
+                message(ActivationType.TENANT_SUBSCRIPTION, "tenant-5"));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        when(monolithClient.getMaxConcurrentCalls()).thenReturn(2);
+        when(outboxService.claimNextBatch(50)).thenReturn(messages);
+        when(outboxService.readPayload(any(MonolithOutboxMessage.class), eq(TenantActivationRequest.class)))
+                .thenReturn(new TenantActivationRequest("tenant", "PRO", "MONTHLY"));
+        when(monolithClient.activateTenantSubscription("tenant", "PRO", "MONTHLY")).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.runAsync(inFlight::decrementAndGet, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        });
+
+        relay.relay();
+
+        verify(monolithClient, times(5)).activateTenantSubscription("tenant", "PRO", "MONTHLY");
+        verify(outboxService, times(5)).markDelivered(any(UUID.class));
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    void relay_ShouldSendSingleActivationsConcurrently() {
+        MonolithOutboxMessage tenant = message(ActivationType.TENANT_SUBSCRIPTION, "tenant-1");
+        MonolithOutboxMessage member = message(ActivationType.USER_MEMBERSHIP, "user-1");
+        SubscriptionRequest request = new SubscriptionRequest("PRO", "MONTHLY");
+        CompletableFuture<Void> tenantActivation = new CompletableFuture<>();
+
+        when(outboxService.claimNextBatch(50)).thenReturn(List.of(tenant, member));
+        when(outboxService.readPayload(tenant, TenantActivationRequest.class))
+                .thenReturn(new TenantActivationRequest("tenant-1", "PRO", "MONTHLY"));
+        when(outboxService.readPayload(member, SubscriptionRequest.class)).thenReturn(request);
+        when(monolithClient.activateTenantSubscription("tenant-1", "PRO", "MONTHLY")).thenReturn(tenantActivation);
+        when(monolithClient.activateUserMembership("user-1", request)).thenAnswer(invocation -> {
+            tenantActivation.complete(null);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        relay.relay();
+
+        verify(outboxService).markDelivered(tenant.getId());
+        verify(outboxService).markDelivered(member.getId());
+    }
+
+    @Test
+    void relay_ShouldWaitForMoreMessages_WhenBulkBatchIsNotReady() {
+        MonolithOutboxProperties properties = new MonolithOutboxProperties();
+        properties.getBulk().setEnabled(true);
+        relay = new MonolithOutboxRelay(outboxService, monolithClient, properties);
+
+        when(outboxService.isBatchReady(100, properties.getBulk().getMaxLatency())).thenReturn(false);
+
+        relay.relay();
+
+        verify(outboxService, never()).claimNextBatch(anyInt());
+        verifyNoInteractions(monolithClient);
+    }
+
+    @Test
+    void relay_ShouldSendOneBulkRequest_AndRetryOnlyFailedItems() {
+        MonolithOutboxProperties properties = new MonolithOutboxProperties();
+        properties.getBulk().setEnabled(true);
+        relay = new MonolithOutboxRelay(outboxService, monolithClient, properties);
+
+        MonolithOutboxMessage first = message(ActivationType.TENANT_SUBSCRIPTION, "tenant-1");
+        MonolithOutboxMessage second = message(ActivationType.TENANT_SUBSCRIPTION, "tenant-2");
+
+        when(outboxService.isBatchReady(100, properties.getBulk().getMaxLatency())).thenReturn(true);
+        when(outboxService.claimNextBatch(100)).thenReturn(List.of(first, second));
+        when(outboxService.readPayload(first, TenantActivationRequest.class))
+                .thenReturn(new TenantActivationRequest("tenant-1", "PRO", "MONTHLY"));
+        when(outboxService.readPayload(second, TenantActivationRequest.class))
+                .thenReturn(new TenantActivationRequest("tenant-2", "GROWTH", "YEARLY"));
+        when(monolithClient.activateTenantSubscriptions(anyList())).thenReturn(List.of(
+                new ActivationResult(first.getId().toString(), true, null),
+                new ActivationResult(second.getId().toString(), false, "tenant locked")));
+
+        relay.relay();
+
+        verify(monolithClient, times(1)).activateTenantSubscriptions(anyList());
+        verify(monolithClient, never()).activateTenantSubscription(any(), any(), any());
+        verify(outboxService).markAllDelivered(List.of(first.getId()));
+        verify(outboxService).markFailed(second.getId(), "tenant locked");
+    }
+
+    private MonolithOutboxMessage message(ActivationType type, String aggregateKey) {
+        return MonolithOutboxMessage.builder()
+                .id(UUID.randomUUID())
+                .aggregateKey(aggregateKey)
+                .type(type)
+                .payload("{}")
+                .status(OutboxStatus.IN_FLIGHT)
+                .attempts(1)
+                .build();
+    }
+}
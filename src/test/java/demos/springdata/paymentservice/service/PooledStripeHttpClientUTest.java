@@ -0,0 +1,125 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.net.ApiResource;
+import com.stripe.net.HttpContent;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import demos.springdata.paymentservice.client.PooledStripeHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PooledStripeHttpClientUTest {
+
+    private static final String FORM = "email=member%40gym.bg";
+
+    private HttpServer server;
+    private String baseUrl;
+    private PooledStripeHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        client = new PooledStripeHttpClient(HttpClients.createDefault());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void request_ShouldSendRequestHeadersBodyAndSdkIdentification() throws Exception {
+        AtomicReference<Headers> headers = new AtomicReference<>();
+        AtomicReference<String> body = new AtomicReference<>();
+        server.createContext("/v1/customers", exchange -> {
+            headers.set(exchange.getRequestHeaders());
+            body.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+
+        client.request(request("/v1/customers", 5000));
+
+        assertEquals("Bearer sk_test_123", headers.get().getFirst("Authorization"));
+        assertTrue(headers.get().getFirst("User-Agent").contains("JavaBindings"));
+        assertTrue(headers.get().getFirst("X-Stripe-Client-User-Agent").contains("bindings_version"));
+        assertTrue(headers.get().getFirst("Content-Type").startsWith("application/x-www-form-urlencoded"));
+        assertEquals(FORM, body.get());
+    }
+
+    @Test
+    void request_ShouldMapStatusHeadersAndBody() throws Exception {
+        String error = "{\"error\":{\"type\":\"card_error\"}}";
+        server.createContext("/v1/customers", exchange -> {
+            byte[] response = error.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Request-Id", "req_123");
+            exchange.sendResponseHeaders(402, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+
+        StripeResponse response = client.request(request("/v1/customers", 5000));
+
+        assertEquals(402, response.code());
+        assertEquals(error, response.body());
+        assertEquals("req_123", response.headers().firstValue("Request-Id").orElse(null));
+    }
+
+    @Test
+    void request_ShouldFailWithConnectionError_WhenResponseExceedsReadTimeout() throws Exception {
+        server.createContext("/v1/customers", exchange -> {
+            try {
+                TimeUnit.SECONDS.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+
+        StripeRequest request = request("/v1/customers", 200);
+
+        long started = System.nanoTime();
+        assertThrows(ApiConnectionException.class, () -> client.request(request));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1500);
+    }
+
+    private StripeRequest request(String path, int readTimeoutMillis) throws IOException {
+        HttpContent content = mock(HttpContent.class);
+        when(content.byteArrayContent()).thenReturn(FORM.getBytes(StandardCharsets.UTF_8));
+        when(content.contentType()).thenReturn("application/x-www-form-urlencoded;charset=UTF-8");
+
+        StripeRequest request = mock(StripeRequest.class);
+        when(request.method()).thenReturn(ApiResource.RequestMethod.POST);
+        when(request.url()).thenReturn(new URL(baseUrl + path));
+        when(request.headers()).thenReturn(HttpHeaders.of(Map.of("Authorization", List.of("Bearer sk_test_123"))));
+        when(request.content()).thenReturn(content);
+        when(request.options()).thenReturn(RequestOptions.builder().setReadTimeout(readTimeoutMillis).build());
+        return request;
+    }
+}
@@ -0,0 +1,151 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.StripeClient;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Price;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PriceCreateParams;
+import demos.springdata.paymentservice.config.StripeRateLimitProperties;
+import demos.springdata.paymentservice.model.entity.StripePrice;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
+import demos.springdata.paymentservice.repository.StripePriceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PriceCatalogServiceUTest {
+
+    private static final String ACCOUNT = "acct_gym_123";
+    private static final String LOOKUP_KEY = "acct_gym_123:PRO:MONTHLY:bgn:5000";
+
+    @Mock
+    private StripePriceRepository stripePriceRepository;
+
+    @Mock
+    private StripeClientRegistry stripeClients;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private StripeClient stripeClient;
+
+    private PriceCatalogService priceCatalogService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stripeClients.get(StripeTrafficClass.CONNECT_CHECKOUT)).thenReturn(stripeClient);
+        priceCatalogService = new PriceCatalogService(stripePriceRepository, stripeClients,
+                new StripeRateLimiter(new StripeRateLimitProperties(), new SimpleMeterRegistry()), new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    void resolvePriceId_ShouldCreatePriceOnConnectedAccount_WhenNotInCatalog() throws StripeException {
+        when(stripePriceRepository.findByLookupKey(LOOKUP_KEY)).thenReturn(Optional.empty());
+        when(stripePriceRepository.insertIfAbsent(any(UUID.class), eq(LOOKUP_KEY), eq(ACCOUNT), eq("price_new"),
+                eq("PRO - MONTHLY"), eq("bgn"), eq(5000L), any(Instant.class))).thenReturn(1);
+
+        Price price = mock(Price.class);
+        when(price.getId()).thenReturn("price_new");
+        when(stripeClient.prices().create(any(PriceCreateParams.class), any(RequestOptions.class))).thenReturn(price);
+
+        assertEquals("price_new", priceCatalogService.resolvePriceId(ACCOUNT, "PRO", "MONTHLY", "BGN", 5000L));
+
+        ArgumentCaptor<RequestOptions> options = ArgumentCaptor.forClass(RequestOptions.class);
+        verify(stripeClient.prices()).create(any(PriceCreateParams.class), options.capture());
+        assertEquals(ACCOUNT, options.getValue().getStripeAccount());
+        assertEquals("price-" + LOOKUP_KEY, options.getValue().getIdempotencyKey());
+    }
+
+    @Test
+    void resolvePriceId_ShouldServeFromMemory_AfterFirstLookup() throws StripeException {
+        when(stripePriceRepository.findByLookupKey(LOOKUP_KEY)).thenReturn(Optional.of(price(LOOKUP_KEY, "price_stored")));
+
+        assertEquals("price_stored", priceCatalogService.resolvePriceId(ACCOUNT, "PRO", "MONTHLY", "bgn", 5000L));
+        assertEquals("price_stored", priceCatalogService.resolvePriceId(ACCOUNT, "PRO", "MONTHLY", "BGN", 5000L));
+
+        verify(stripePriceRepository, times(1)).findByLookupKey(LOOKUP_KEY);
+        verifyNoInteractions(stripeClients);
+    }
+
+    @Test
+    void resolvePriceId_ShouldUseStoredPrice_WhenAnotherNodeInsertedFirst() throws StripeException {
+        when(stripePriceRepository.findByLookupKey(LOOKUP_KEY))
+                .thenReturn(Optional.empty(), Optional.of(price(LOOKUP_KEY, "price_winner")));
+        when(stripePriceRepository.insertIfAbsent(any(UUID.class), any(), any(), any(), any(), any(), anyLong(), any(Instant.class)))
+                .thenReturn(0);
+
+        Price price = mock(Price.class);
+        when(price.getId()).thenReturn("price_loser");
+        when(stripeClient.prices().create(any(PriceCreateParams.class), any(RequestOptions.class))).thenReturn(price);
+
+        assertEquals("price_winner", priceCatalogService.resolvePriceId(ACCOUNT, "PRO", "MONTHLY", "BGN", 5000L));
+    }
+
+    @Test
+    void refresh_ShouldDropArchivedPrices() throws StripeException {
+        StripePrice archived = price(LOOKUP_KEY, "price_archived");
+        when(stripePriceRepository.findAll()).thenReturn(List.of(archived));
+
+        Price remote = mock(Price.class);
+        when(remote.getActive()).thenReturn(false);
+        when(stripeClient.prices().retrieve(eq("price_archived"), any(RequestOptions.class))).thenReturn(remote);
+
+        priceCatalogService.refresh();
+
+        verify(stripePriceRepository).markRetired(LOOKUP_KEY, "price_archived");
+    }
+
+    @Test
+    void resolvePriceId_ShouldReplaceRetiredPrice_UnderANewIdempotencyKey() throws StripeException {
+        StripePrice retired = price(LOOKUP_KEY, "price_archived");
+        retired.setRetired(true);
+        when(stripePriceRepository.findByLookupKey(LOOKUP_KEY)).thenReturn(Optional.of(retired));
+        when(stripePriceRepository.replaceRetired(eq(LOOKUP_KEY), eq("price_archived"), eq("price_replacement"), any(Instant.class)))
+                .thenReturn(1);
+
+        Price price = mock(Price.class);
+        when(price.getId()).thenReturn("price_replacement");
+        when(stripeClient.prices().create(any(PriceCreateParams.class), any(RequestOptions.class))).thenReturn(price);
+
+        assertEquals("price_replacement", priceCatalogService.resolvePriceId(ACCOUNT, "PRO", "MONTHLY", "BGN", 5000L));
+
+        ArgumentCaptor<RequestOptions> options = ArgumentCaptor.forClass(RequestOptions.class);
+        verify(stripeClient.prices()).create(any(PriceCreateParams.class), options.capture());
+        assertEquals("price-" + LOOKUP_KEY + "-replaces-price_archived", options.getValue().getIdempotencyKey());
+        verify(stripePriceRepository, never()).insertIfAbsent(any(), any(), any(), any(), any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void lookupKey_ShouldSeparatePlatformAndConnectedAccounts() {
+        assertEquals("platform:PRO:YEARLY:eur:1000", PriceCatalogService.lookupKey(null, "PRO", "YEARLY", "EUR", 1000L));
+        assertEquals("acct_1:PRO:YEARLY:eur:1000", PriceCatalogService.lookupKey("acct_1", "PRO", "YEARLY", "EUR", 1000L));
+    }
+
+    private static StripePrice price(String lookupKey, String stripePriceId) {
+        return StripePrice.builder()
+                .id(UUID.randomUUID())
+                .lookupKey(lookupKey)
+                .stripeAccountId(ACCOUNT)
+                .stripePriceId(stripePriceId)
+                .productName("PRO - MONTHLY")
+                .currency("bgn")
+                .unitAmount(5000L)
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,65 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.model.Event;
+import demos.springdata.paymentservice.repository.ProcessedEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProcessedEventRegistryUTest {
+
+    @Mock
+    private ProcessedEventRepository processedEventRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ProcessedEventRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new ProcessedEventRegistry(processedEventRepository, meterRegistry, 1000, Duration.ofHours(1));
+    }
+
+    @Test
+    void isDuplicate_ShouldAnswerFromMemory_WhenEventWasSeenRecently() {
+        Event event = event("evt_123");
+        when(processedEventRepository.insertIfAbsent(eq("evt_123"), eq("checkout.session.completed"), any(Instant.class)))
+                .thenReturn(1);
+
+        assertFalse(registry.isDuplicate(event));
+        assertTrue(registry.isDuplicate(event));
+
+        verify(processedEventRepository, times(1)).insertIfAbsent(any(), any(), any());
+        assertEquals(1.0, meterRegistry.get("stripe.webhook.events").tag("outcome", "accepted").counter().count());
+        assertEquals(1.0, meterRegistry.get("stripe.webhook.events").tag("outcome", "duplicate").counter().count());
+    }
+
+    @Test
+    void isDuplicate_ShouldReturnTrue_WhenEventIdAlreadyStored() {
+        Event event = event("evt_456");
+        when(processedEventRepository.insertIfAbsent(eq("evt_456"), eq("checkout.session.completed"), any(Instant.class)))
+                .thenReturn(0);
+
+        assertTrue(registry.isDuplicate(event));
+    }
+
+    private Event event(String id) {
+        Event event = mock(Event.class);
+        when(event.getId()).thenReturn(id);
+        when(event.getType()).thenReturn("checkout.session.completed");
+        return event;
+    }
+}
@@ -0,0 +1,119 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.client.AsyncMonolithClient;
+import demos.springdata.paymentservice.client.MonolithClientErrorPredicate;
+import demos.springdata.paymentservice.client.MonolithFeignClient;
+import demos.springdata.paymentservice.client.ResilientMonolithClient;
+import demos.springdata.paymentservice.exception.MonolithCallException;
+import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ResilientMonolithClientUTest {
+
+    @Mock
+    private MonolithFeignClient monolithFeignClient;
+    @Mock
+    private AsyncMonolithClient asyncMonolithClient;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ResilientMonolithClient client;
+
+    @BeforeEach
+    void setUp() {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .build();
+        meterRegistry = new SimpleMeterRegistry();
+        client = new ResilientMonolithClient(monolithFeignClient, asyncMonolithClient, CircuitBreakerRegistry.of(config),
+                BulkheadRegistry.ofDefaults(), meterRegistry);
+    }
+
+    @Test
+    void activateTenantSubscription_ShouldFailFast_OnceCircuitOpens() {
+        when(asyncMonolithClient.activateTenantSubscription("tenant-1", "PRO", "MONTHLY"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("monolith down")));
+
+        assertThrows(CompletionException.class, () -> client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY").join());
+        assertThrows(CompletionException.class, () -> client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY").join());
+
+        CompletionException rejected = assertThrows(CompletionException.class,
+                () -> client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY").join());
+
+        assertInstanceOf(CallNotPermittedException.class, rejected.getCause());
+        verify(asyncMonolithClient, times(2)).activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+    }
+
+    @Test
+    void activateUserMembership_ShouldUseItsOwnCircuit_WhenTenantCircuitIsOpen() {
+        SubscriptionRequest request = new SubscriptionRequest("PRO", "MONTHLY");
+        when(asyncMonolithClient.activateTenantSubscription("tenant-1", "PRO", "MONTHLY"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("monolith down")));
+        when(asyncMonolithClient.activateUserMembership("user-1", request)).thenReturn(CompletableFuture.completedFuture(null));
+
+        client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+        client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+
+        client.activateUserMembership("user-1", request).join();
+
+        assertEquals(1, meterRegistry.get("monolith.client.requests").tag("endpoint", "activate-membership").tag("outcome", "success").timer().count());
+        assertEquals(2, meterRegistry.get("monolith.client.requests").tag("endpoint", "activate-tenant").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    void activateTenantSubscriptions_ShouldRejectBulkCall_WhileTenantCircuitIsOpen() {
+        when(asyncMonolithClient.activateTenantSubscription("tenant-1", "PRO", "MONTHLY"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("monolith down")));
+
+        client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+        client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+
+        assertThrows(CallNotPermittedException.class, () -> client.activateTenantSubscriptions(List.of()));
+        verify(monolithFeignClient, never()).activateTenantSubscriptions(anyList());
+    }
+
+    @Test
+    void activateTenantSubscription_ShouldKeepCircuitClosed_OnMonolithClientErrors() {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .ignoreException(new MonolithClientErrorPredicate())
+                .build();
+        client = new ResilientMonolithClient(monolithFeignClient, asyncMonolithClient, CircuitBreakerRegistry.of(config),
+                BulkheadRegistry.ofDefaults(), meterRegistry);
+
+        when(asyncMonolithClient.activateTenantSubscription("tenant-1", "PRO", "MONTHLY"))
+                .thenReturn(CompletableFuture.failedFuture(new MonolithCallException(404, "tenant not found")))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("Too many concurrent monolith calls")))
+                .thenReturn(CompletableFuture.failedFuture(new MonolithCallException(409, "already active")));
+
+        for (int i = 0; i < 3; i++) {
+            CompletionException failure = assertThrows(CompletionException.class,
+                    () -> client.activateTenantSubscription("tenant-1", "PRO", "MONTHLY").join());
+            assertFalse(failure.getCause() instanceof CallNotPermittedException);
+        }
+
+        verify(asyncMonolithClient, times(3)).activateTenantSubscription("tenant-1", "PRO", "MONTHLY");
+    }
+}
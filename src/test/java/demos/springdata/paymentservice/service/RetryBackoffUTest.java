@@ -0,0 +1,21 @@
+package demos.springdata.paymentservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RetryBackoffUTest {
+
+    @Test
+    void delayFor_ShouldDoublePerAttempt_AndBeCappedAtMax() {
+        RetryBackoff backoff = new RetryBackoff(Duration.ofSeconds(5), Duration.ofSeconds(30));
+
+        assertEquals(Duration.ofSeconds(5), backoff.delayFor(1));
+        assertEquals(Duration.ofSeconds(10), backoff.delayFor(2));
+        assertEquals(Duration.ofSeconds(20), backoff.delayFor(3));
+        assertEquals(Duration.ofSeconds(30), backoff.delayFor(10));
+        assertEquals(Duration.ofSeconds(30), backoff.delayFor(100));
+    }
+}
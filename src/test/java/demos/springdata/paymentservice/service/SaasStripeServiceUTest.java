@@ -1,13 +1,16 @@
 package demos.springdata.paymentservice.service;
 
+import com.stripe.StripeClient;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Customer;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.CustomerCreateParams;
 import com.stripe.param.checkout.SessionCreateParams;
-import demos.springdata.paymentservice.model.entity.PaymentTenant;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
 import demos.springdata.paymentservice.repository.PaymentTenantRepository;
 import demos.springdata.paymentservice.web.dto.CheckoutRequest;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
@@ -16,6 +19,7 @@ import java.util.Optional;
 import java.util.UUID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,12 +28,36 @@ public class SaasStripeServiceUTest {
     @Mock
     private PaymentTenantRepository paymentTenantRepository;
 
+    @Mock
+    private PriceCatalogService priceCatalogService;
+
+    @Mock
+    private CheckoutSessionRegistry checkoutSessionRegistry;
+
+    @Mock
+    private StripeClientRegistry stripeClients;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private StripeClient stripeClient;
+
+    @Mock
+    private StripeRateLimiter stripeRateLimiter;
+
     @Captor
-    ArgumentCaptor<PaymentTenant> tenantCaptor;
+    ArgumentCaptor<SessionCreateParams> sessionParamsCaptor;
 
     @InjectMocks
     private SaasStripeService saasStripeService;
 
+    @BeforeEach
+    void setUp() throws StripeException {
+        lenient().when(checkoutSessionRegistry.getOrCreate(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<CheckoutSessionRegistry.SessionFactory>getArgument(2).create());
+        lenient().when(stripeClients.get(StripeTrafficClass.SAAS_CHECKOUT)).thenReturn(stripeClient);
+        lenient().when(stripeRateLimiter.call(any(), any()))
+                .thenAnswer(invocation -> invocation.<StripeRateLimiter.StripeCall<?>>getArgument(1).execute());
+    }
+
     @Test
     void createSaasCheckoutSession_ShouldCreatePaymentTenant_WhenTenantNotFound() throws StripeException {
         String tenantIdString = UUID.randomUUID().toString();
@@ -44,36 +72,36 @@ public class SaasStripeServiceUTest {
                 .abonnementDuration("MONTHLY")
                 .build();
 
-        Mockito.when(paymentTenantRepository.findByTenantId(tenantIdString))
+        Mockito.when(paymentTenantRepository.upsertContactDetails(any(UUID.class), eq(tenantIdString), eq("TestTenant"), eq("test@tenant.bg")))
                 .thenReturn(Optional.empty());
+        Mockito.when(paymentTenantRepository.upsertStripeCustomer(any(UUID.class), eq(tenantIdString), eq("TestTenant"),
+                        eq("test@tenant.bg"), eq("cus_newly_created_999")))
+                .thenReturn("cus_newly_created_999");
+        Mockito.when(priceCatalogService.resolvePriceId(null, "PRO", "MONTHLY", "BGN", 1000L))
+                .thenReturn("price_saas_pro_monthly");
 
-        try(MockedStatic<Customer> customerStatic = mockStatic(Customer.class);
-            MockedStatic<Session> sessionStatic = mockStatic(Session.class)) {
-
-            Customer mockCustomer = mock(Customer.class);
-            when(mockCustomer.getId()).thenReturn("cus_newly_created_999");
+        Customer mockCustomer = mock(Customer.class);
+        when(mockCustomer.getId()).thenReturn("cus_newly_created_999");
 
-            customerStatic.when(() -> Customer.create(any(CustomerCreateParams.class)))
-                    .thenReturn(mockCustomer);
+        when(stripeClient.customers().create(any(CustomerCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(mockCustomer);
 
-            Session mockSession = mock(Session.class);
-            when(mockSession.getId()).thenReturn("cs_test_session_123");
+        Session mockSession = mock(Session.class);
+        when(mockSession.getId()).thenReturn("cs_test_session_123");
 
-            sessionStatic.when(() -> Session.create(any(SessionCreateParams.class)))
-                    .thenReturn(mockSession);
+        when(stripeClient.checkout().sessions().create(any(SessionCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(mockSession);
 
-            Session result = saasStripeService.createSaasCheckoutSession(checkoutRequest);
+        Session result = saasStripeService.createSaasCheckoutSession(checkoutRequest);
 
-            assertNotNull(result);
-            assertEquals("cs_test_session_123", result.getId());
+        assertNotNull(result);
+        assertEquals("cs_test_session_123", result.getId());
 
-            verify(paymentTenantRepository).save(tenantCaptor.capture());
-            PaymentTenant savedTenant = tenantCaptor.getValue();
+        verify(paymentTenantRepository, never()).save(any());
 
-            assertEquals(tenantIdString, savedTenant.getTenantId());
-            assertEquals("test@tenant.bg", savedTenant.getBusinessEmail());
-            assertEquals("TestTenant", savedTenant.getName());
-        }
+        verify(stripeClient.checkout().sessions()).create(sessionParamsCaptor.capture(), any(RequestOptions.class));
+        assertEquals("cus_newly_created_999", sessionParamsCaptor.getValue().getCustomer());
+        assertEquals("price_saas_pro_monthly", sessionParamsCaptor.getValue().getLineItems().get(0).getPrice());
 
     }
 
@@ -92,38 +120,66 @@ public class SaasStripeServiceUTest {
                 .build();
 
 
-        PaymentTenant paymentTenant = PaymentTenant.builder()
-                .id(UUID.randomUUID())
-                .tenantId(tenantIdString)
-                .name(request.getTenantName())
-                .businessEmail(request.getBusinessEmail())
-                .stripeCustomerId("cus_existing_123")
-                .build();
+        Mockito.when(paymentTenantRepository.upsertContactDetails(any(UUID.class), eq(tenantIdString), eq("Existing Gym"), eq("existing@gym.bg")))
+                .thenReturn(Optional.of("cus_existing_123"));
+        Mockito.when(priceCatalogService.resolvePriceId(null, "PRO", "ANNUALLY", "USD", 2000L))
+                .thenReturn("price_saas_pro_annually");
+
+
+        Session mockSession = mock(Session.class);
+        when(mockSession.getId()).thenReturn("cs_session_existing_user");
+
+        when(stripeClient.checkout().sessions().create(any(SessionCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(mockSession);
+
+        Session result = saasStripeService.createSaasCheckoutSession(request);
 
-        Mockito.when(paymentTenantRepository.findByTenantId(tenantIdString))
-                .thenReturn(Optional.of(paymentTenant));
+        assertEquals("cs_session_existing_user", result.getId());
 
+        verify(stripeClient, never()).customers();
 
-        try (MockedStatic<Customer> customerStatic = mockStatic(Customer.class);
-             MockedStatic<Session> sessionStatic = mockStatic(Session.class)) {
+        verify(paymentTenantRepository, never()).upsertStripeCustomer(any(), any(), any(), any(), any());
 
-            Session mockSession = mock(Session.class);
-            when(mockSession.getId()).thenReturn("cs_session_existing_user");
+        verify(stripeClient.checkout().sessions()).create(sessionParamsCaptor.capture(), any(RequestOptions.class));
+        assertEquals("cus_existing_123", sessionParamsCaptor.getValue().getCustomer());
+    }
+
+    @Test
+    void createSaasCheckoutSession_ShouldReturnOpenSession_WhenSameRequestIsRepeated() throws StripeException {
+        Session openSession = mock(Session.class);
+        CheckoutRequest request = CheckoutRequest.builder()
+                .tenantId(UUID.randomUUID().toString())
+                .currency("BGN")
+                .amount(1000L)
+                .plan("PRO")
+                .abonnementDuration("MONTHLY")
+                .build();
 
-            sessionStatic.when(() -> Session.create(any(SessionCreateParams.class)))
-                    .thenReturn(mockSession);
+        when(checkoutSessionRegistry.getOrCreate(anyString(), any(), any())).thenReturn(openSession);
 
-            Session result = saasStripeService.createSaasCheckoutSession(request);
+        assertSame(openSession, saasStripeService.createSaasCheckoutSession(request));
 
-            assertEquals("cs_session_existing_user", result.getId());
+        verifyNoInteractions(stripeClients, paymentTenantRepository, priceCatalogService);
+    }
+
+    @Test
+    void createSaasCheckoutSession_ShouldConfirmCachedSessionWithStripe_BeforeReusingIt() throws StripeException {
+        Session current = new Session();
+        CheckoutRequest request = CheckoutRequest.builder()
+                .tenantId(UUID.randomUUID().toString())
+                .currency("BGN")
+                .amount(1000L)
+                .plan("PRO")
+                .abonnementDuration("MONTHLY")
+                .build();
 
-            customerStatic.verify(() -> Customer.create(any(CustomerCreateParams.class)), never());
+        when(checkoutSessionRegistry.getOrCreate(anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<CheckoutSessionRegistry.SessionRetriever>getArgument(1).retrieve("cs_cached"));
+        when(stripeClient.checkout().sessions().retrieve(eq("cs_cached"), any(RequestOptions.class))).thenReturn(current);
 
-            verify(paymentTenantRepository).save(tenantCaptor.capture());
-            PaymentTenant updatedTenant = tenantCaptor.getValue();
+        assertSame(current, saasStripeService.createSaasCheckoutSession(request));
 
-            assertEquals("existing@gym.bg", updatedTenant.getBusinessEmail());
-            assertEquals("cus_existing_123", updatedTenant.getStripeCustomerId());
-        }
+        verify(stripeRateLimiter).call(isNull(), any());
+        verify(stripeClient.checkout().sessions(), never()).create(any(SessionCreateParams.class), any(RequestOptions.class));
     }
 }
@@ -0,0 +1,97 @@
+package demos.springdata.paymentservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightUTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void execute_ShouldShareOneCall_BetweenConcurrentCallersOfTheSameKey() throws Exception {
+        CountDownLatch calling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                calling.countDown();
+                awaitUninterruptibly(release);
+                return "value";
+            }));
+            assertTrue(calling.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                return "other";
+            }));
+
+            assertEquals("unrelated", singleFlight.execute("other-key", () -> "unrelated"));
+            release.countDown();
+
+            assertEquals("value", first.get(5, TimeUnit.SECONDS));
+            assertEquals("value", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_ShouldRunAgain_OnceTheFlightHasLanded() {
+        singleFlight.execute("key", () -> "value-" + calls.incrementAndGet());
+
+        assertEquals("value-2", singleFlight.execute("key", () -> "value-" + calls.incrementAndGet()));
+    }
+
+    @Test
+    void execute_ShouldRethrowCheckedException_AndForgetTheKey() throws IOException {
+        IOException failure = new IOException("boom");
+
+        IOException thrown = assertThrows(IOException.class, () -> singleFlight.execute("key", () -> {
+            throw failure;
+        }));
+
+        assertSame(failure, thrown);
+        assertEquals("value", singleFlight.execute("key", () -> "value"));
+    }
+
+    @Test
+    void await_ShouldUnwrapCheckedException() {
+        IOException failure = new IOException("boom");
+
+        IOException thrown = assertThrows(IOException.class,
+                () -> SingleFlight.<String, IOException>await(CompletableFuture.failedFuture(failure)));
+
+        assertSame(failure, thrown);
+    }
+
+    @Test
+    void await_ShouldUnwrapRuntimeException() {
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> SingleFlight.await(CompletableFuture.failedFuture(failure)));
+
+        assertSame(failure, thrown);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.config.StripeProperties;
+import demos.springdata.paymentservice.model.enums.StripeTrafficClass;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripeClientRegistryUTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private StripeClientRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        StripeProperties.Client onboarding = new StripeProperties.Client();
+        onboarding.setMaxConnections(5);
+
+        StripeProperties properties = new StripeProperties();
+        properties.setApiKey("sk_test_123");
+        properties.getClients().put(StripeTrafficClass.ONBOARDING, onboarding);
+
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new StripeClientRegistry(properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    void get_ShouldReturnOneClientPerTrafficClass() {
+        assertNotNull(registry.get(StripeTrafficClass.SAAS_CHECKOUT));
+        assertNotSame(registry.get(StripeTrafficClass.SAAS_CHECKOUT), registry.get(StripeTrafficClass.CONNECT_CHECKOUT));
+        assertNotSame(registry.get(StripeTrafficClass.CONNECT_CHECKOUT), registry.get(StripeTrafficClass.ONBOARDING));
+    }
+
+    @Test
+    void constructor_ShouldPublishOnePoolPerTrafficClass_WithItsOwnLimit() {
+        assertEquals(5, maxConnections("stripe-onboarding"));
+        assertEquals(20, maxConnections("stripe-connect-checkout"));
+        assertEquals(20, maxConnections("stripe-saas-checkout"));
+    }
+
+    private double maxConnections(String pool) {
+        return meterRegistry.get("httpcomponents.httpclient.pool.total.max").tag("httpclient", pool).gauge().value();
+    }
+}
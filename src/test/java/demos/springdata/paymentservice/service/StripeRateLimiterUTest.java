@@ -0,0 +1,105 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import demos.springdata.paymentservice.config.StripeRateLimitProperties;
+import demos.springdata.paymentservice.exception.PaymentException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripeRateLimiterUTest {
+
+    private static final String ACCOUNT = "acct_gym_123";
+
+    private StripeRateLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private StripeRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StripeRateLimitProperties();
+        properties.setAccountRate(1);
+        properties.setAccountBurst(1);
+        properties.setMaxWait(Duration.ZERO);
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new StripeRateLimiter(properties, meterRegistry);
+    }
+
+    @Test
+    void call_ShouldReturnResult_WhenBudgetIsAvailable() throws StripeException {
+        assertEquals("cs_1", limiter.call(ACCOUNT, () -> "cs_1"));
+        assertEquals("cus_1", limiter.call(null, () -> "cus_1"));
+    }
+
+    @Test
+    void call_ShouldRejectWith429_WhenAccountBudgetIsSpent() throws StripeException {
+        limiter.call(ACCOUNT, () -> "cs_1");
+
+        PaymentException exception = assertThrows(PaymentException.class, () -> limiter.call(ACCOUNT, () -> "cs_2"));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getErrorCode());
+        assertEquals("cs_3", limiter.call("acct_other_gym", () -> "cs_3"));
+        assertEquals(1.0, meterRegistry.get("stripe.rate-limiter.throttled").tag("scope", "account").tag("outcome", "rejected").counter().count());
+    }
+
+    @Test
+    void call_ShouldKeepAccountBudget_WhenGlobalBudgetRejectsTheCall() throws Exception {
+        properties.setGlobalRate(20);
+        properties.setGlobalBurst(1);
+        limiter = new StripeRateLimiter(properties, meterRegistry);
+
+        limiter.call(null, () -> "cus_1");
+        assertThrows(PaymentException.class, () -> limiter.call(ACCOUNT, () -> "cs_1"));
+
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertEquals("cs_2", limiter.call(ACCOUNT, () -> "cs_2"));
+        assertEquals(1.0, meterRegistry.get("stripe.rate-limiter.throttled").tag("scope", "global").tag("outcome", "rejected").counter().count());
+    }
+
+    @Test
+    void call_ShouldSlowDownAccount_WhenStripeReturns429() {
+        properties.setAccountRate(10);
+        properties.setAccountBurst(10);
+        limiter = new StripeRateLimiter(properties, meterRegistry);
+
+        PaymentException exception = assertThrows(PaymentException.class, () -> limiter.call(ACCOUNT, () -> {
+            throw new RateLimitException("Too many requests", null, "req_1", "rate_limit", 429, null);
+        }));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getErrorCode());
+        assertEquals(1.0, meterRegistry.get("stripe.rate-limiter.rate-limited").tag("scope", "account").counter().count());
+        assertEquals(1.0, meterRegistry.get("stripe.rate-limiter.slowed-accounts").gauge().value());
+        assertThrows(PaymentException.class, () -> limiter.call(ACCOUNT, () -> "cs_paused"));
+    }
+
+    @Test
+    void call_ShouldKeepRate_WhenStripeReportsLockTimeout() {
+        properties.setAccountRate(10);
+        properties.setAccountBurst(10);
+        limiter = new StripeRateLimiter(properties, meterRegistry);
+
+        assertThrows(PaymentException.class, () -> limiter.call(ACCOUNT, () -> {
+            throw new RateLimitException("Lock timeout", null, "req_1", "lock_timeout", 429, null);
+        }));
+
+        assertEquals(0.0, meterRegistry.get("stripe.rate-limiter.slowed-accounts").gauge().value());
+    }
+
+    @Test
+    void call_ShouldNotThrottle_WhenDisabled() throws StripeException {
+        properties.setEnabled(false);
+        limiter = new StripeRateLimiter(properties, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("cs", limiter.call(ACCOUNT, () -> "cs"));
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package demos.springdata.paymentservice.service;
 
+import com.stripe.model.Account;
+import com.stripe.model.Charge;
 import com.stripe.model.Event;
 import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.model.checkout.Session;
-import demos.springdata.paymentservice.client.MonolithFeignClient;
-import demos.springdata.paymentservice.model.entity.PaymentCustomer;
 import demos.springdata.paymentservice.model.entity.PaymentTenant;
+import demos.springdata.paymentservice.model.entity.StripeConnectAccount;
 import demos.springdata.paymentservice.model.enums.SubscriptionStatus;
+import demos.springdata.paymentservice.repository.ConnectRepository;
 import demos.springdata.paymentservice.repository.PaymentCustomerRepository;
 import demos.springdata.paymentservice.repository.PaymentTenantRepository;
 import demos.springdata.paymentservice.web.dto.SubscriptionRequest;
@@ -14,12 +16,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -27,18 +33,27 @@ import static org.mockito.Mockito.*;
 public class StripeWebhookServiceUTest {
 
     @Mock
-    private MonolithFeignClient monolithClient;
+    private MonolithOutboxService monolithOutboxService;
     @Mock
     private PaymentTenantRepository paymentTenantRepository;
     @Mock
     private PaymentCustomerRepository paymentCustomerRepository;
+    @Mock
+    private ProcessedEventRegistry processedEventRegistry;
+    @Mock
+    private ConnectRepository connectRepository;
+    @Mock
+    private ConnectAccountCache connectAccountCache;
+    @Mock
+    private AccountLinkCache accountLinkCache;
+    @Mock
+    private CheckoutSessionRegistry checkoutSessionRegistry;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @Captor
     private ArgumentCaptor<PaymentTenant> tenantCaptor;
 
-    @Captor
-    private ArgumentCaptor<PaymentCustomer> customerCaptor;
-
     @Captor
     private ArgumentCaptor<SubscriptionRequest> subscriptionRequestCaptor;
 
@@ -86,7 +101,7 @@ public class StripeWebhookServiceUTest {
         assertEquals(duration, savedTenant.getBillingPeriod());
         assertEquals(stripeSubId, savedTenant.getStripeSubscriptionId());
 
-        Mockito.verify(monolithClient).activateTenantSubscription(tenantId, planName, duration);
+        Mockito.verify(monolithOutboxService).enqueueTenantActivation(tenantId, planName, duration);
     }
 
     @Test
@@ -113,25 +128,51 @@ public class StripeWebhookServiceUTest {
         session.setId("cs_test_gym_123");
 
         when(event.getType()).thenReturn("checkout.session.completed");
+        when(event.getAccount()).thenReturn("acct_gym_123");
         when(event.getDataObjectDeserializer()).thenReturn(deserializer);
 
         when(deserializer.getObject()).thenReturn(Optional.of(session));
 
-        when(paymentCustomerRepository.findByUserId(userId)).thenReturn(Optional.empty());
-
         webhookService.handleEvent(event);
 
-        verify(paymentCustomerRepository).save(customerCaptor.capture());
-        PaymentCustomer savedCustomer = customerCaptor.getValue();
-        assertEquals(userId, savedCustomer.getUserId());
-        assertEquals(stripeCustomerId, savedCustomer.getStripeCustomerId());
+        verify(paymentCustomerRepository).upsert(any(UUID.class), eq(userId), eq(stripeCustomerId), eq("acct_gym_123"));
+        verify(paymentCustomerRepository, never()).save(any());
 
-        verify(monolithClient).activateUserMembership(eq(userId), subscriptionRequestCaptor.capture());
+        verify(checkoutSessionRegistry).evict("cs_test_gym_123");
+        verify(monolithOutboxService).enqueueMembershipActivation(eq(userId), subscriptionRequestCaptor.capture());
         SubscriptionRequest request = subscriptionRequestCaptor.getValue();
         assertEquals(plan, request.subscriptionPlan());
         assertEquals(employment, request.employment());
     }
 
+    @Test
+    void handleEvent_ShouldSkipCustomerUpsert_WhenMembershipEventHasNoConnectedAccount() {
+        String userId = UUID.randomUUID().toString();
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("type", "GYM_MEMBERSHIP");
+        metadata.put("userId", userId);
+        metadata.put("subscriptionPlan", "PRO");
+        metadata.put("employment", "MONTHLY");
+
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+
+        Session session = new Session();
+        session.setMetadata(metadata);
+        session.setCustomer("cus_gym_user_789");
+        session.setId("cs_test_gym_124");
+
+        when(event.getType()).thenReturn("checkout.session.completed");
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.of(session));
+
+        webhookService.handleEvent(event);
+
+        verifyNoInteractions(paymentCustomerRepository);
+        verify(monolithOutboxService).enqueueMembershipActivation(eq(userId), any(SubscriptionRequest.class));
+    }
+
     @Test
     void handleEvent_ShouldHandleDeserializationError_Gracefully() {
 
@@ -145,6 +186,170 @@ public class StripeWebhookServiceUTest {
 
         webhookService.handleEvent(event);
 
-        verifyNoInteractions(monolithClient);
+        verifyNoInteractions(monolithOutboxService);
+    }
+
+    @Test
+    void handleEvent_ShouldSkipProcessing_WhenEventIsDuplicate() {
+
+        Event event = mock(Event.class);
+
+        when(processedEventRegistry.isRecentlyProcessed(event)).thenReturn(true);
+
+        webhookService.handleEvent(event);
+
+        verify(event, never()).getDataObjectDeserializer();
+        verifyNoInteractions(transactionManager, paymentTenantRepository, paymentCustomerRepository, monolithOutboxService);
+    }
+
+    @Test
+    void handleEvent_ShouldSkipWrites_WhenEventWasRecordedByAnotherInstance() {
+
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+        Session session = new Session();
+
+        when(event.getType()).thenReturn("checkout.session.completed");
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.of(session));
+        when(processedEventRegistry.isDuplicate(event)).thenReturn(true);
+
+        webhookService.handleEvent(event);
+
+        verify(transactionManager).getTransaction(any());
+        verifyNoInteractions(paymentTenantRepository, paymentCustomerRepository, monolithOutboxService);
+    }
+
+    @Test
+    void handleEvent_ShouldNotOpenTransaction_WhenPayloadCannotBeDeserialized() {
+
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.empty());
+
+        webhookService.handleEvent(event);
+
+        verifyNoInteractions(transactionManager);
+        verify(processedEventRegistry, never()).isDuplicate(event);
+    }
+
+    @Test
+    void handleEvent_ShouldSyncConnectAccountState_WhenAccountUpdated() {
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+        Account account = mock(Account.class);
+        Account.Capabilities capabilities = mock(Account.Capabilities.class);
+
+        when(event.getType()).thenReturn("account.updated");
+        when(event.getCreated()).thenReturn(1_700_000_000L);
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.of(account));
+        when(account.getId()).thenReturn("acct_gym_123");
+        when(account.getChargesEnabled()).thenReturn(true);
+        when(account.getPayoutsEnabled()).thenReturn(true);
+        when(account.getDetailsSubmitted()).thenReturn(true);
+        when(account.getCapabilities()).thenReturn(capabilities);
+        when(capabilities.getCardPayments()).thenReturn("active");
+        when(capabilities.getTransfers()).thenReturn("pending");
+
+        StripeConnectAccount connectAccount = new StripeConnectAccount();
+        connectAccount.setStripeAccountId("acct_gym_123");
+        when(connectRepository.findByStripeAccountId("acct_gym_123")).thenReturn(Optional.of(connectAccount));
+
+        webhookService.handleEvent(event);
+
+        verify(connectRepository).save(connectAccount);
+        verify(connectAccountCache).invalidate(connectAccount);
+        verify(accountLinkCache).invalidateAccount("acct_gym_123");
+        assertTrue(connectAccount.isChargesEnabled());
+        assertTrue(connectAccount.isPayoutsEnabled());
+        assertTrue(connectAccount.isDetailsSubmitted());
+        assertEquals("active", connectAccount.getCardPaymentsStatus());
+        assertEquals("pending", connectAccount.getTransfersStatus());
+        assertEquals(Instant.ofEpochSecond(1_700_000_000L), connectAccount.getStateSyncedAt());
+    }
+
+    @Test
+    void handleEvent_ShouldIgnoreStaleAccountUpdate() {
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+        Account account = mock(Account.class);
+
+        when(event.getType()).thenReturn("account.updated");
+        when(event.getCreated()).thenReturn(1_700_000_000L);
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.of(account));
+        when(account.getId()).thenReturn("acct_gym_123");
+
+        StripeConnectAccount connectAccount = new StripeConnectAccount();
+        connectAccount.setStripeAccountId("acct_gym_123");
+        connectAccount.setChargesEnabled(true);
+        connectAccount.setStateSyncedAt(Instant.ofEpochSecond(1_700_000_100L));
+        when(connectRepository.findByStripeAccountId("acct_gym_123")).thenReturn(Optional.of(connectAccount));
+
+        webhookService.handleEvent(event);
+
+        verify(connectRepository, never()).save(any());
+        verifyNoInteractions(connectAccountCache);
+        assertTrue(connectAccount.isChargesEnabled());
+    }
+
+    @Test
+    void handleEvent_ShouldApplyAccountUpdate_FromTheSameSecondAsTheLastSync() {
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+        Account account = mock(Account.class);
+
+        when(event.getType()).thenReturn("account.updated");
+        when(event.getCreated()).thenReturn(1_700_000_000L);
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.of(account));
+        when(account.getId()).thenReturn("acct_gym_123");
+        when(account.getChargesEnabled()).thenReturn(true);
+
+        StripeConnectAccount connectAccount = new StripeConnectAccount();
+        connectAccount.setStripeAccountId("acct_gym_123");
+        connectAccount.setStateSyncedAt(Instant.ofEpochSecond(1_700_000_000L).plusMillis(700));
+        when(connectRepository.findByStripeAccountId("acct_gym_123")).thenReturn(Optional.of(connectAccount));
+
+        webhookService.handleEvent(event);
+
+        verify(connectRepository).save(connectAccount);
+        assertTrue(connectAccount.isChargesEnabled());
+    }
+
+    @Test
+    void handleEvent_ShouldForgetOpenSession_WhenCheckoutSessionExpired() {
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+        Session session = new Session();
+        session.setId("cs_expired_1");
+
+        when(event.getType()).thenReturn("checkout.session.expired");
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.of(session));
+
+        webhookService.handleEvent(event);
+
+        verify(checkoutSessionRegistry).evict("cs_expired_1");
+        verifyNoInteractions(paymentTenantRepository, paymentCustomerRepository, monolithOutboxService);
+    }
+
+    @Test
+    void handleEvent_ShouldNotTreatChargeAsCheckoutSession_WhenChargeUpdated() {
+        Event event = mock(Event.class);
+        EventDataObjectDeserializer deserializer = mock(EventDataObjectDeserializer.class);
+        Charge charge = new Charge();
+        charge.setId("ch_123");
+
+        when(event.getType()).thenReturn("charge.updated");
+        when(event.getDataObjectDeserializer()).thenReturn(deserializer);
+        when(deserializer.getObject()).thenReturn(Optional.of(charge));
+
+        webhookService.handleEvent(event);
+
+        verifyNoInteractions(checkoutSessionRegistry, paymentTenantRepository, paymentCustomerRepository, monolithOutboxService);
     }
 }
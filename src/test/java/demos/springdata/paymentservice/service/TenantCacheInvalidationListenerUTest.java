@@ -0,0 +1,71 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.config.TenantCacheProperties;
+import demos.springdata.paymentservice.model.entity.PaymentTenant;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TenantCacheInvalidationListenerUTest {
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+    @Mock
+    private SessionFactory sessionFactory;
+    @Mock
+    private Cache cache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TenantCacheInvalidationListener listener;
+
+    @BeforeEach
+    void setUp() {
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getCache()).thenReturn(cache);
+        meterRegistry = new SimpleMeterRegistry();
+        listener = new TenantCacheInvalidationListener(new DataSourceProperties(), entityManagerFactory,
+                new TenantCacheProperties(), meterRegistry);
+    }
+
+    @Test
+    void handle_ShouldEvictOnlyTheChangedTenant_WhenRowWasUpdated() {
+        UUID id = UUID.randomUUID();
+
+        listener.handle("UPDATE:" + id);
+
+        verify(cache).evictEntityData(PaymentTenant.class, id);
+        verify(cache, never()).evictNaturalIdData(PaymentTenant.class);
+        assertEquals(1.0, meterRegistry.counter("payment-tenants.cache.invalidations").count());
+    }
+
+    @Test
+    void handle_ShouldAlsoDropNaturalIdMappings_WhenRowWasDeleted() {
+        UUID id = UUID.randomUUID();
+
+        listener.handle("DELETE:" + id);
+
+        verify(cache).evictEntityData(PaymentTenant.class, id);
+        verify(cache).evictNaturalIdData(PaymentTenant.class);
+    }
+
+    @Test
+    void handle_ShouldIgnoreMalformedPayload() {
+        listener.handle("UPDATE:not-a-uuid");
+
+        verifyNoInteractions(cache);
+        assertEquals(0.0, meterRegistry.counter("payment-tenants.cache.invalidations").count());
+    }
+}
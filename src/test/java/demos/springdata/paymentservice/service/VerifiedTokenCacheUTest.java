@@ -0,0 +1,72 @@
+package demos.springdata.paymentservice.service;
+
+import demos.springdata.paymentservice.config.JwtCacheProperties;
+import demos.springdata.paymentservice.model.security.JwtPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VerifiedTokenCacheUTest {
+
+    private JwtCacheProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new JwtCacheProperties();
+        properties.setEnabled(true);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void getIfPresent_ShouldReturnCachedPrincipal_WhenTokenWasVerifiedBefore() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties, meterRegistry);
+        JwtPrincipal principal = principal(Instant.now().plusSeconds(3600));
+
+        cache.put("token-a", principal);
+
+        assertSame(principal, cache.getIfPresent("token-a"));
+        assertNull(cache.getIfPresent("token-b"));
+    }
+
+    @Test
+    void put_ShouldSkipPrincipal_WhenTokenIsAlreadyExpired() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties, meterRegistry);
+
+        cache.put("expired", principal(Instant.now().minusSeconds(5)));
+
+        assertNull(cache.getIfPresent("expired"));
+    }
+
+    @Test
+    void getIfPresent_ShouldAlwaysMiss_WhenCacheIsDisabled() {
+        properties.setEnabled(false);
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties, meterRegistry);
+
+        cache.put("token-a", principal(Instant.now().plusSeconds(3600)));
+
+        assertNull(cache.getIfPresent("token-a"));
+    }
+
+    @Test
+    void getIfPresent_ShouldRecordHitAndMissMetrics() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(properties, meterRegistry);
+        cache.put("token-a", principal(Instant.now().plusSeconds(3600)));
+
+        cache.getIfPresent("token-a");
+        cache.getIfPresent("token-b");
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", "miss").functionCounter().count());
+    }
+
+    private JwtPrincipal principal(Instant expiresAt) {
+        return new JwtPrincipal("user@gym.bg", List.of(new SimpleGrantedAuthority("ROLE_USER")), expiresAt);
+    }
+}
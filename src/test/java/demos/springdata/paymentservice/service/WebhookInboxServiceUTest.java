@@ -0,0 +1,124 @@
+package demos.springdata.paymentservice.service;
+
+import com.stripe.model.Event;
+import demos.springdata.paymentservice.config.WebhookInboxProperties;
+import demos.springdata.paymentservice.exception.UnprocessableEventException;
+import demos.springdata.paymentservice.model.entity.WebhookInboxEvent;
+import demos.springdata.paymentservice.model.enums.InboxStatus;
+import demos.springdata.paymentservice.repository.WebhookInboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WebhookInboxServiceUTest {
+
+    @Mock
+    private WebhookInboxRepository inboxRepository;
+
+    private WebhookInboxProperties properties;
+
+    private WebhookInboxService inboxService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebhookInboxProperties();
+        properties.setMaxAttempts(3);
+        properties.setInitialBackoff(Duration.ofSeconds(5));
+        properties.setMaxBackoff(Duration.ofSeconds(30));
+        inboxService = new WebhookInboxService(inboxRepository, properties);
+    }
+
+    @Test
+    void enqueue_ShouldReturnFalse_WhenEventIsAlreadyInInbox() {
+        Event event = mock(Event.class);
+        when(event.getId()).thenReturn("evt_123");
+        when(event.getType()).thenReturn("checkout.session.completed");
+
+        when(inboxRepository.insertIfAbsent(any(UUID.class), eq("evt_123"), eq("checkout.session.completed"), eq("{}"), any(Instant.class)))
+                .thenReturn(0);
+
+        assertFalse(inboxService.enqueue(event, "{}"));
+    }
+
+    @Test
+    void claimNextBatch_ShouldMarkEventsAsProcessing() {
+        WebhookInboxEvent inboxEvent = inboxEvent(0);
+        when(inboxRepository.lockNextDue(any(Instant.class), eq(5))).thenReturn(List.of(inboxEvent));
+
+        List<WebhookInboxEvent> batch = inboxService.claimNextBatch(5);
+
+        assertEquals(1, batch.size());
+        assertEquals(InboxStatus.PROCESSING, inboxEvent.getStatus());
+        assertEquals(1, inboxEvent.getAttempts());
+        assertNotNull(inboxEvent.getLockedUntil());
+    }
+
+    @Test
+    void markFailed_ShouldRescheduleWithBackoff_WhenAttemptsRemain() {
+        WebhookInboxEvent inboxEvent = inboxEvent(2);
+        when(inboxRepository.findById(inboxEvent.getId())).thenReturn(Optional.of(inboxEvent));
+
+        inboxService.markFailed(inboxEvent.getId(), new IllegalStateException("monolith down"));
+
+        assertEquals(InboxStatus.PENDING, inboxEvent.getStatus());
+        assertTrue(inboxEvent.getNextAttemptAt().isAfter(Instant.now().plusSeconds(5)));
+        assertTrue(inboxEvent.getLastError().contains("monolith down"));
+    }
+
+    @Test
+    void markFailed_ShouldGiveUp_WhenMaxAttemptsReached() {
+        WebhookInboxEvent inboxEvent = inboxEvent(3);
+        when(inboxRepository.findById(inboxEvent.getId())).thenReturn(Optional.of(inboxEvent));
+
+        inboxService.markFailed(inboxEvent.getId(), new IllegalStateException("monolith down"));
+
+        assertEquals(InboxStatus.FAILED, inboxEvent.getStatus());
+    }
+
+    @Test
+    void markFailed_ShouldGiveUpAtOnce_WhenEventCannotBeProcessed() {
+        WebhookInboxEvent inboxEvent = inboxEvent(1);
+        when(inboxRepository.findById(inboxEvent.getId())).thenReturn(Optional.of(inboxEvent));
+
+        inboxService.markFailed(inboxEvent.getId(), new UnprocessableEventException("Tenant not found for ID: tenant-1"));
+
+        assertEquals(InboxStatus.FAILED, inboxEvent.getStatus());
+        assertTrue(inboxEvent.getLastError().contains("Tenant not found"));
+    }
+
+    @Test
+    void markFailed_ShouldGiveUpAtOnce_WhenPayloadHasUnexpectedType() {
+        WebhookInboxEvent inboxEvent = inboxEvent(1);
+        when(inboxRepository.findById(inboxEvent.getId())).thenReturn(Optional.of(inboxEvent));
+
+        inboxService.markFailed(inboxEvent.getId(), new ClassCastException("Charge cannot be cast to Session"));
+
+        assertEquals(InboxStatus.FAILED, inboxEvent.getStatus());
+    }
+
+    private WebhookInboxEvent inboxEvent(int attempts) {
+        return WebhookInboxEvent.builder()
+                .id(UUID.randomUUID())
+                .eventId("evt_123")
+                .eventType("checkout.session.completed")
+                .payload("{}")
+                .status(InboxStatus.PROCESSING)
+                .attempts(attempts)
+                .receivedAt(Instant.now())
+                .nextAttemptAt(Instant.now())
+                .build();
+    }
+}